@@ -20,8 +20,8 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class AllSavedTimerItemsDialog extends DialogWrapper {
     private JPanel contentPane;
@@ -161,7 +161,7 @@ public class AllSavedTimerItemsDialog extends DialogWrapper {
 
     private JScrollPane createTable(SpentTimePerTaskStorage storage) {
 
-        ConcurrentHashMap<String, Long> timerItems = storage.getAllStoredItems();
+        Map<String, Long> timerItems = storage.getAllStoredItems();
         int columns = 3;
         int i = 0;
 
@@ -196,8 +196,8 @@ public class AllSavedTimerItemsDialog extends DialogWrapper {
         return new JBScrollPane(timeTrackerItemsTable);
     }
 
-    protected static ConcurrentHashMap<String, Long> pickSelectedTimeTrackerItemsOnly(JBTable table, Project project) {
-        ConcurrentHashMap<String, Long> selectedItems = new ConcurrentHashMap<>();
+    protected static Map<String, Long> pickSelectedTimeTrackerItemsOnly(JBTable table, Project project) {
+        Map<String, Long> selectedItems = new LinkedHashMap<>();
         SpentTimePerTaskStorage storage = ComponentAware.Companion.of(project).getSpentTimePerTaskStorage();
 
         for (int i = 0; i < table.getRowCount(); i++) {
@@ -232,7 +232,7 @@ public class AllSavedTimerItemsDialog extends DialogWrapper {
 
         @Override
         protected void doAction(ActionEvent e) {
-            ConcurrentHashMap<String, Long> selectedItems = pickSelectedTimeTrackerItemsOnly(timeTrackerItemsTable, project);
+            Map<String, Long> selectedItems = pickSelectedTimeTrackerItemsOnly(timeTrackerItemsTable, project);
 
             new TimeTrackerConnector(repo, project).postSavedWorkItemsToServer(selectedItems);
             close(0);
@@ -13,7 +13,7 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 
 public class ConfirmDiscardDialog extends DialogWrapper {
     private JPanel contentPane;
@@ -74,7 +74,7 @@ public class ConfirmDiscardDialog extends DialogWrapper {
 
         @Override
         protected void doAction(ActionEvent e) {
-            ConcurrentHashMap<String, Long> selectedItems =
+            Map<String, Long> selectedItems =
                     AllSavedTimerItemsDialog.pickSelectedTimeTrackerItemsOnly(timeTrackerItemsTable, project);
             SpentTimePerTaskStorage storage = ComponentAware.Companion.of(project).getSpentTimePerTaskStorage();
             selectedItems.forEach((task, time) -> {
@@ -1,10 +1,13 @@
 package com.github.jk1.ytplugin
 
 import com.github.jk1.ytplugin.commands.CommandService
+import com.github.jk1.ytplugin.commands.CommandVocabulary
 import com.github.jk1.ytplugin.commands.ICommandService
 import com.github.jk1.ytplugin.issues.IssueStoreUpdaterService
 import com.github.jk1.ytplugin.issues.PersistentIssueStore
 import com.github.jk1.ytplugin.navigator.SourceNavigatorService
+import com.github.jk1.ytplugin.rest.RefreshScheduler
+import com.github.jk1.ytplugin.rest.ServerBackoffService
 import com.github.jk1.ytplugin.setup.CredentialsChecker
 import com.github.jk1.ytplugin.tasks.TaskManagerProxyService
 import com.github.jk1.ytplugin.timeTracker.IssueWorkItemsStoreUpdaterService
@@ -36,9 +39,15 @@ interface ComponentAware {
     val commandComponent: ICommandService
         get() = project.getService(CommandService::class.java)!!
 
+    val commandVocabularyComponent: CommandVocabulary
+        get() = project.getService(CommandVocabulary::class.java)!!
+
     val sourceNavigatorComponent: SourceNavigatorService
         get() = project.getService(SourceNavigatorService::class.java)!!
 
+    val projectDisposable: YouTrackProjectDisposable
+        get() = project.getService(YouTrackProjectDisposable::class.java)!!
+
     val issueWorkItemsStoreComponent: PersistentIssueWorkItemsStore
         get() = ApplicationManager.getApplication().getService(PersistentIssueWorkItemsStore::class.java)!!
 
@@ -51,6 +60,12 @@ interface ComponentAware {
     val issueUpdaterComponent: IssueStoreUpdaterService
         get() = project.getService(IssueStoreUpdaterService::class.java)!!
 
+    val serverBackoffComponent: ServerBackoffService
+        get() = ApplicationManager.getApplication().getService(ServerBackoffService::class.java)!!
+
+    val refreshSchedulerComponent: RefreshScheduler
+        get() = ApplicationManager.getApplication().getService(RefreshScheduler::class.java)!!
+
     val pluginApiComponent: YouTrackPluginApiService
         get() = project.getService(YouTrackPluginApiService::class.java) as YouTrackPluginApiService
 
@@ -0,0 +1,16 @@
+package com.github.jk1.ytplugin
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+
+/**
+ * Parent disposable for the plugin resources bound to the project lifetime, like project subscriptions
+ * to application-level services. Disposed by the platform when the project is closed.
+ */
+@Service
+class YouTrackProjectDisposable : Disposable {
+
+    override fun dispose() {
+        // children are disposed by the platform
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.jk1.ytplugin.commands
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Command assist statistics: how often suggestions come from the cache, how often a caller
+ * joins a request already in flight and how long the server takes to respond.
+ */
+class CommandAssistMetrics {
+
+    private val requests = AtomicLong()
+    private val cacheHits = AtomicLong()
+    private val coalescedWaits = AtomicLong()
+    private val serverRequests = AtomicLong()
+    private val serverLatencyNanos = AtomicLong()
+    private val maxServerLatencyNanos = AtomicLong()
+
+    fun onCacheHit() {
+        requests.incrementAndGet()
+        cacheHits.incrementAndGet()
+    }
+
+    fun onCoalescedWait() {
+        requests.incrementAndGet()
+        coalescedWaits.incrementAndGet()
+    }
+
+    fun onServerRequest(latencyNanos: Long) {
+        requests.incrementAndGet()
+        serverRequests.incrementAndGet()
+        serverLatencyNanos.addAndGet(latencyNanos)
+        maxServerLatencyNanos.accumulateAndGet(latencyNanos, Math::max)
+    }
+
+    val requestCount: Long get() = requests.get()
+
+    val hitRate: Double get() = requests.get().let { if (it == 0L) 0.0 else cacheHits.get().toDouble() / it }
+
+    val coalescedWaitCount: Long get() = coalescedWaits.get()
+
+    val averageServerLatencyMs: Long
+        get() = serverRequests.get().let {
+            if (it == 0L) 0 else TimeUnit.NANOSECONDS.toMillis(serverLatencyNanos.get() / it)
+        }
+
+    override fun toString() = "${requests.get()} command assist requests, " +
+            "cache hit rate ${String.format("%.2f", hitRate)}, ${coalescedWaits.get()} coalesced, " +
+            "${serverRequests.get()} sent to server with average latency $averageServerLatencyMs ms " +
+            "(max ${TimeUnit.NANOSECONDS.toMillis(maxServerLatencyNanos.get())} ms)"
+}
@@ -2,6 +2,7 @@ package com.github.jk1.ytplugin.commands
 
 import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.commands.model.CommandAssistResponse
+import com.github.jk1.ytplugin.commands.model.CommandSuggestion
 import com.github.jk1.ytplugin.commands.model.YouTrackCommand
 import com.github.jk1.ytplugin.commands.model.YouTrackCommandExecution
 import com.github.jk1.ytplugin.issues.model.Issue
@@ -9,23 +10,35 @@ import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.notifications.IdeNotificationsTrait
 import com.github.jk1.ytplugin.rest.AdminRestClient
 import com.github.jk1.ytplugin.rest.CommandRestClient
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.Service
+import com.intellij.openapi.progress.ProcessCanceledException
 import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils
 import com.intellij.openapi.progress.Task
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.util.Key
 import com.intellij.util.concurrency.FutureResult
+import java.io.InterruptedIOException
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Future
 
 @Service
-class CommandService(override val project: Project): ICommandService, ComponentAware, IdeNotificationsTrait {
+class CommandService(override val project: Project): ICommandService, ComponentAware, IdeNotificationsTrait, Disposable {
 
     companion object {
         val SERVICE_KEY: Key<ICommandService> = Key.create(CommandService::class.toString())
         val ISSUE_KEY: Key<Issue> = Key.create(Issue::class.toString())
     }
 
-    private val assistCache = CommandSuggestResponseCache(project)
+    private val assistCache = CommandSuggestResponseCache(project).also { Disposer.register(this, it) }
+    // completion and highlighting ask for the same command at the same time, they share a single server request
+    private val assistRequests = ConcurrentHashMap<CommandSuggestResponseCache.CommandCacheKey, CompletableFuture<CommandAssistResponse>>()
+    val assistMetrics = CommandAssistMetrics()
 
     override fun executeAsync(execution: YouTrackCommandExecution): Future<Unit> {
         val future = FutureResult<Unit>()
@@ -52,9 +65,55 @@ class CommandService(override val project: Project): ICommandService, ComponentA
     }
 
     override fun suggest(command: YouTrackCommand): CommandAssistResponse {
-        val response = assistCache[command] ?: command.issue.restClient.assistCommand(command)
-        assistCache[command] = response
-        return response
+        val cached = assistCache[command]
+        if (cached != null) {
+            assistMetrics.onCacheHit()
+            return cached
+        }
+        val key = assistCache.keyOf(command)
+        val request = CompletableFuture<CommandAssistResponse>()
+        val inFlight = assistRequests.putIfAbsent(key, request)
+        if (inFlight != null) {
+            assistMetrics.onCoalescedWait()
+            try {
+                return ProgressIndicatorUtils.awaitWithCheckCanceled(inFlight)
+            } catch (e: Exception) {
+                // either this caller is cancelled or the shared request has failed
+                if (e is ProcessCanceledException && ProgressManager.getInstance().progressIndicator?.isCanceled == true ||
+                        !e.isCancellation()) {
+                    throw e
+                }
+                // the caller who made the request has given up on it, that's no reason to fail this one
+                logger.debug("Shared command assist request has been cancelled, sending a new one")
+                return suggest(command)
+            }
+        }
+        try {
+            val start = System.nanoTime()
+            val response = command.issue.restClient.assistCommand(command)
+            assistMetrics.onServerRequest(System.nanoTime() - start)
+            assistCache[command] = response
+            commandVocabularyComponent.learn(command.command, response.highlightRanges)
+            request.complete(response)
+            return response
+        } catch (e: Throwable) {
+            request.completeExceptionally(e)
+            throw e
+        } finally {
+            assistRequests.remove(key, request)
+            if (assistMetrics.requestCount % 50 == 0L) {
+                logger.debug(assistMetrics.toString())
+            }
+        }
+    }
+
+    override fun suggestCompletion(command: YouTrackCommand): List<CommandSuggestion> {
+        val cached = assistCache.getSuggestions(command)
+        if (cached != null) {
+            assistMetrics.onCacheHit()
+            return cached
+        }
+        return suggest(command).suggestions
     }
 
     override fun getActiveTaskVisibilityGroups(issue: Issue, callback: (List<String>) -> Unit): Future<Unit> {
@@ -77,6 +136,15 @@ class CommandService(override val project: Project): ICommandService, ComponentA
         return future
     }
 
+    private fun Throwable.isCancellation(): Boolean = generateSequence(this) { it.cause }.take(10).any {
+        it is CancellationException || it is InterruptedException || it is InterruptedIOException ||
+                it is ProcessCanceledException
+    }
+
     private val Issue.restClient: CommandRestClient
         get() = CommandRestClient(taskManagerComponent.getYouTrackRepository(this))
-}
\ No newline at end of file
+
+    override fun dispose() {
+        // suggestion cache is disposed along with the service
+    }
+}
@@ -2,66 +2,164 @@ package com.github.jk1.ytplugin.commands
 
 import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.commands.model.CommandAssistResponse
+import com.github.jk1.ytplugin.commands.model.CommandSuggestion
 import com.github.jk1.ytplugin.commands.model.YouTrackCommand
 import com.github.jk1.ytplugin.logger
+import com.intellij.concurrency.JobScheduler
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.project.Project
-import com.intellij.util.containers.hash.LinkedHashMap
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.math.abs
 
 /**
  * Command assist response cache to make command completion more responsive and avoid UI lags. This is
  * especially helpful for large YouTrack installations, where command backend is known to be slow to
  * respond from time to time.
+ *
+ * Lookups never lock. The cache is bounded by the estimated memory footprint of the responses, least recently
+ * used entries are evicted first. Stale entries are removed by a periodic sweep.
  */
-class CommandSuggestResponseCache(override val project: Project) : ComponentAware {
-
-    private val cache = SuggestResponseCache()
+class CommandSuggestResponseCache(override val project: Project) : ComponentAware, Disposable {
 
     companion object {
         private val CACHE_ENTRY_TTL = TimeUnit.MILLISECONDS.convert(30, TimeUnit.MINUTES)
+        private const val SWEEP_INTERVAL_MIN = 5L
+        private const val MAX_SIZE_BYTES = 2L * 1024 * 1024
+        // characters that change the parser state, so suggestions made before them can't be reused after
+        private const val WORD_DELIMITERS = " \t\n{}:#,\"'()"
+    }
+
+    private class Entry(val response: CommandAssistResponse, val size: Long) {
+        @Volatile
+        var lastAccess = System.nanoTime()
     }
 
+    private val cache = ConcurrentHashMap<CommandCacheKey, Entry>()
+    private val size = AtomicLong()
+    private val evictionLock = Any()
+
+    private val sweepTask = JobScheduler.getScheduler().scheduleWithFixedDelay({ sweep() },
+            SWEEP_INTERVAL_MIN, SWEEP_INTERVAL_MIN, TimeUnit.MINUTES)
+
     operator fun get(command: YouTrackCommand): CommandAssistResponse? {
-        synchronized(this) {
-            val key = CommandCacheKey(command.command, command.caret, command.url())
-            val result = cache[key]
-            if (result == null) {
-                logger.debug("Command suggestion cache miss: $key")
-            } else {
-                logger.debug("Command suggestion cache hit: $key")
-            }
-            return result
+        val key = keyOf(command)
+        val result = lookup(key)
+        if (result == null) {
+            logger.debug("Command suggestion cache miss: $key")
+        } else {
+            logger.debug("Command suggestion cache hit: $key")
         }
+        return result
     }
 
     operator fun set(command: YouTrackCommand, value: CommandAssistResponse) {
-        synchronized(this) {
-            val key = CommandCacheKey(command.command, command.caret, command.url())
-            logger.debug("New value added to command suggestion cache: $key")
-            cache.put(key, value)
+        val key = keyOf(command)
+        logger.debug("New value added to command suggestion cache: $key")
+        val entry = Entry(value, estimateSize(key, value))
+        cache.put(key, entry)?.let { size.addAndGet(-it.size) }
+        size.addAndGet(entry.size)
+        if (size.get() > MAX_SIZE_BYTES) {
+            evict()
         }
     }
 
-    private fun YouTrackCommand.url() = taskManagerComponent.getYouTrackRepository(issue).url
+    /**
+     * Completion suggestions for the command typed on from a cached one. The server narrows suggestions down
+     * by the word at caret, so when the user just keeps typing the same word, the suggestions for a shorter
+     * prefix of that word can be filtered locally. Highlighting and previews depend on the whole command
+     * and are never reused this way.
+     *
+     * @return null if there is no cached response the suggestions can be safely derived from
+     */
+    fun getSuggestions(command: YouTrackCommand): List<CommandSuggestion>? {
+        val url = command.url()
+        lookup(CommandCacheKey(command.command, command.caret, url))?.let { return it.suggestions }
+        val text = command.command
+        val caret = command.caret
+        if (caret != text.length) {
+            return null
+        }
+        val wordStart = text.indexOfLast { WORD_DELIMITERS.contains(it) } + 1
+        val word = text.substring(wordStart)
+        // the longest cached prefix of the word wins, empty word means all the suggestions and is not reused
+        for (prefixEnd in caret - 1 downTo wordStart + 1) {
+            val response = lookup(CommandCacheKey(text.substring(0, prefixEnd), prefixEnd, url)) ?: continue
+            val suggestions = response.suggestions.filter { it.option.contains(word, true) }
+            // server may return a limited number of suggestions, so the ones we're looking for might be missing
+            if (suggestions.isNotEmpty()) {
+                logger.debug("Command suggestions for '$text' derived from a cached prefix: '${text.substring(0, prefixEnd)}'")
+                return suggestions
+            }
+        }
+        return null
+    }
 
-    data class CommandCacheKey(val command: String, val caret: Int, val serverUrl: String)
+    fun keyOf(command: YouTrackCommand) = CommandCacheKey(command.command, command.caret, command.url())
 
-    inner class SuggestResponseCache : LinkedHashMap<CommandCacheKey, CommandAssistResponse>(10, true) {
+    private fun lookup(key: CommandCacheKey): CommandAssistResponse? {
+        val entry = cache[key] ?: return null
+        if (entry.isStale()) {
+            remove(key, entry)
+            return null
+        }
+        entry.lastAccess = System.nanoTime()
+        return entry.response
+    }
 
-        override fun removeEldestEntry(
-                eldest: MutableMap.MutableEntry<CommandCacheKey, CommandAssistResponse>,
-                key: CommandCacheKey, value: CommandAssistResponse):
-                Boolean = this.size > 30
+    private fun evict() {
+        synchronized(evictionLock) {
+            val entries = cache.entries.sortedBy { it.value.lastAccess }.iterator()
+            while (size.get() > MAX_SIZE_BYTES && entries.hasNext()) {
+                val (key, entry) = entries.next()
+                if (remove(key, entry)) {
+                    logger.debug("Value evicted from command suggestion cache: $key")
+                }
+            }
+        }
+    }
 
-        override fun get(key: CommandCacheKey?): CommandAssistResponse? {
-            super.get(key)?.let {
-                if (abs(System.currentTimeMillis() - it.timestamp) > CACHE_ENTRY_TTL) {
+    private fun sweep() {
+        try {
+            cache.entries.filter { it.value.isStale() }.forEach { (key, entry) ->
+                if (remove(key, entry)) {
                     logger.debug("Stale value evicted from command suggestion cache: $key")
-                    remove(key)
                 }
             }
-            return super.get(key)
+        } catch (e: Exception) {
+            logger.warn("Failed to evict stale command suggestions: ${e.message}")
+            logger.debug(e)
+        }
+    }
+
+    private fun remove(key: CommandCacheKey, entry: Entry): Boolean {
+        val removed = cache.remove(key, entry)
+        if (removed) {
+            size.addAndGet(-entry.size)
         }
+        return removed
+    }
+
+    override fun dispose() {
+        sweepTask.cancel(false)
     }
-}
\ No newline at end of file
+
+    private fun Entry.isStale() = abs(System.currentTimeMillis() - response.timestamp) > CACHE_ENTRY_TTL
+
+    /**
+     * Rough memory footprint: two bytes per char plus a fixed overhead per object
+     */
+    private fun estimateSize(key: CommandCacheKey, response: CommandAssistResponse): Long {
+        val suggestions = response.suggestions.sumOf {
+            2L * (it.description.length + it.option.length + it.prefix.length + it.suffix.length) + 128
+        }
+        val previews = response.previews.sumOf { 2L * it.description.length + 32 }
+        return 2L * (key.command.length + key.serverUrl.length) + suggestions + previews +
+                64L * response.highlightRanges.size + 128
+    }
+
+    private fun YouTrackCommand.url() = taskManagerComponent.getYouTrackRepository(issue).url
+
+    data class CommandCacheKey(val command: String, val caret: Int, val serverUrl: String)
+}
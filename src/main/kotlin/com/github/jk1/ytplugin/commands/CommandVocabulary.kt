@@ -0,0 +1,47 @@
+package com.github.jk1.ytplugin.commands
+
+import com.github.jk1.ytplugin.commands.lang.CommandLexer
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition
+import com.github.jk1.ytplugin.commands.model.CommandHighlightRange
+import com.intellij.openapi.components.Service
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Field names, values and keywords the server has highlighted in the previous commands.
+ * Command lexer uses them to highlight the command locally while the user is typing.
+ */
+@Service
+class CommandVocabulary {
+
+    companion object {
+        const val FIELD = "field"
+        const val KEYWORD = "keyword"
+        private const val MAX_WORDS = 5000
+    }
+
+    private val words = ConcurrentHashMap<String, String>()
+
+    /**
+     * @return [FIELD], [KEYWORD] or null if the word hasn't been seen yet
+     */
+    fun styleOf(word: String): String? = words[word.lowercase()]
+
+    fun learn(command: String, ranges: List<CommandHighlightRange>) {
+        val styled = ranges.filter { it.styleClass == FIELD || it.styleClass == KEYWORD }
+        if (styled.isEmpty()) {
+            return
+        }
+        val lexer = CommandLexer()
+        lexer.start(command)
+        while (lexer.tokenType != null) {
+            if (lexer.tokenType in CommandParserDefinition.WORDS) {
+                val word = command.substring(lexer.tokenStart, lexer.tokenEnd).lowercase()
+                val range = styled.firstOrNull { it.getTextRange().containsOffset(lexer.tokenStart) }
+                if (range != null && (words.size < MAX_WORDS || words.containsKey(word))) {
+                    words[word] = range.styleClass
+                }
+            }
+            lexer.advance()
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.github.jk1.ytplugin.commands
 
 import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.commands.model.CommandAssistResponse
+import com.github.jk1.ytplugin.commands.model.CommandSuggestion
 import com.github.jk1.ytplugin.commands.model.YouTrackCommand
 import com.github.jk1.ytplugin.commands.model.YouTrackCommandExecution
 import com.github.jk1.ytplugin.issues.model.Issue
@@ -14,6 +15,11 @@ interface ICommandService : ComponentAware {
 
     fun suggest(command: YouTrackCommand): CommandAssistResponse
 
+    /**
+     * Same suggestions as [suggest] gives, but possibly derived from a cached response for a shorter command
+     */
+    fun suggestCompletion(command: YouTrackCommand): List<CommandSuggestion>
+
     fun getActiveTaskVisibilityGroups(issue: Issue, callback: (List<String>) -> Unit): Future<Unit>
 
 }
\ No newline at end of file
@@ -12,19 +12,30 @@ import com.intellij.codeInsight.lookup.LookupElement
 import com.intellij.codeInsight.lookup.LookupElementBuilder
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils
+import com.intellij.openapi.util.Key
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.psi.impl.DebugUtil
+import com.intellij.util.TimeoutUtil
 import java.util.concurrent.Callable
-import java.util.concurrent.TimeUnit
-import java.util.concurrent.TimeoutException
+import java.util.concurrent.Future
 
 /**
  * Provides smart completion for YouTrack command language.
+ *
+ * Completion never blocks typing: the platform cancels the completion process on every document change,
+ * and completion stops waiting for the server request in flight. The request itself is allowed to finish,
+ * as highlighting might be waiting for the same response. Automatic completion is debounced, so no request
+ * is sent for the intermediate input while the user keeps typing.
  */
 class CommandCompletionContributor : CompletionContributor() {
 
     private val LOG = Logger.getInstance(CommandCompletionContributor::class.java)
-    private val TIMEOUT = 2000L // ms
+    private val DEBOUNCE_DELAY = 150L // ms
+    // the last suggestion request made for the command editor
+    private val PENDING_REQUEST_KEY: Key<Future<*>> = Key.create("youtrack.command.pending.suggest")
 
     override fun fillCompletionVariants(parameters: CompletionParameters, result: CompletionResultSet) {
         if (LOG.isDebugEnabled) {
@@ -34,21 +45,45 @@ class CommandCompletionContributor : CompletionContributor() {
         val file = parameters.originalFile
         val service = file.getUserData(SERVICE_KEY) ?: return
         val session = file.getUserData(ISSUE_KEY) ?: return
+        // server suggestions depend on the whole command, not just on the word being completed
+        result.restartCompletionOnAnyPrefixChange()
+        if (parameters.isAutoPopup) {
+            debounce()
+        }
+        val command = YouTrackCommand(session, file.text, parameters.offset)
         val future = ApplicationManager.getApplication().executeOnPooledThread (
-                Callable<List<CommandSuggestion>> {
-                    val command = YouTrackCommand(session, parameters.originalFile.text, parameters.offset)
-                    service.suggest(command).suggestions
-                })
+                Callable<List<CommandSuggestion>> { service.suggestCompletion(command) })
+        val previous = file.getUserData(PENDING_REQUEST_KEY)
+        file.putUserData(PENDING_REQUEST_KEY, future)
+        // no interrupts: the server request might be shared with highlighting, its response is cached anyway
+        previous?.cancel(false)
         try {
-            val suggestions: List<CommandSuggestion> = future.get(TIMEOUT, TimeUnit.MILLISECONDS)
+            val suggestions: List<CommandSuggestion> = ProgressIndicatorUtils.awaitWithCheckCanceled(future)
             // actually backed by original CompletionResultSet
             result.withPrefixMatcher(extractPrefix(parameters))
                     .caseInsensitive()
                     .addAllElements(createLookupElements(suggestions))
-        } catch (e: TimeoutException) {
-            LOG.debug("YouTrack request took more than $TIMEOUT ms to complete")
+        } catch (e: ProcessCanceledException) {
+            LOG.debug("Command completion cancelled, dropping YouTrack request")
+            future.cancel(false)
+            throw e
         } catch (e: Exception) {
             LOG.warn(e)
+        } finally {
+            if (file.getUserData(PENDING_REQUEST_KEY) === future) {
+                file.putUserData(PENDING_REQUEST_KEY, null)
+            }
+        }
+    }
+
+    /**
+     * Gives the user a chance to type on. Each keystroke cancels the current completion process.
+     */
+    private fun debounce() {
+        val deadline = System.currentTimeMillis() + DEBOUNCE_DELAY
+        while (System.currentTimeMillis() < deadline) {
+            ProgressManager.checkCanceled()
+            TimeoutUtil.sleep(10)
         }
     }
 
@@ -3,9 +3,9 @@ package com.github.jk1.ytplugin.commands.lang
 import com.github.jk1.ytplugin.commands.CommandService
 import com.github.jk1.ytplugin.commands.CommandService.Companion.SERVICE_KEY
 import com.github.jk1.ytplugin.commands.ICommandService
-import com.github.jk1.ytplugin.commands.model.CommandAssistResponse
 import com.github.jk1.ytplugin.commands.model.CommandHighlightRange
 import com.github.jk1.ytplugin.commands.model.YouTrackCommand
+import com.github.jk1.ytplugin.logger
 import com.intellij.lang.annotation.AnnotationHolder
 import com.intellij.lang.annotation.ExternalAnnotator
 import com.intellij.lang.annotation.HighlightSeverity
@@ -14,14 +14,20 @@ import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.editor.HighlighterColors
 import com.intellij.openapi.editor.HighlighterColors.TEXT
 import com.intellij.openapi.editor.markup.TextAttributes
+import com.intellij.openapi.progress.ProcessCanceledException
 import com.intellij.psi.PsiFile
 
 /**
  * Highlights YouTrack command based on the server-residing command parser's response.
  * It's main duty is to map highlight range classes and to compute necessary text
  * attributes to display the command.
+ *
+ * The command is highlighted by [CommandSyntaxHighlighter] while it's being typed, server response
+ * adds errors and corrects the local guesses once it arrives.
  */
-class CommandHighlightingAnnotator : ExternalAnnotator<CommandAssistResponse, List<CommandHighlightRange>>() {
+class CommandHighlightingAnnotator : ExternalAnnotator<CommandHighlightingAnnotator.CommandInfo, List<CommandHighlightRange>>() {
+
+    class CommandInfo(val service: ICommandService, val command: YouTrackCommand)
 
     companion object {
         private val TEXT_ATTRIBUTES = mapOf<String, TextAttributes>(
@@ -32,16 +38,26 @@ class CommandHighlightingAnnotator : ExternalAnnotator<CommandAssistResponse, Li
         )
     }
 
-    override fun collectInformation(file: PsiFile, editor: Editor, hasErrors: Boolean): CommandAssistResponse {
+    override fun collectInformation(file: PsiFile, editor: Editor, hasErrors: Boolean): CommandInfo {
         val component: ICommandService = file.getUserData(SERVICE_KEY)
                 ?: throw IllegalStateException("Command component user data is missing from the PSI file")
         val session = file.getUserData(CommandService.ISSUE_KEY)
                 ?: throw IllegalStateException("Command component user data is missing from the PSI file")
-        return component.suggest(YouTrackCommand(session, file.text, editor.caretModel.offset))
+        return CommandInfo(component, YouTrackCommand(session, file.text, editor.caretModel.offset))
     }
 
-    override fun doAnnotate(collectedInfo: CommandAssistResponse): List<CommandHighlightRange> {
-        return collectedInfo.highlightRanges
+    /**
+     * Called in background, so the server request doesn't hold the read action
+     */
+    override fun doAnnotate(collectedInfo: CommandInfo): List<CommandHighlightRange> {
+        return try {
+            collectedInfo.service.suggest(collectedInfo.command).highlightRanges
+        } catch (e: ProcessCanceledException) {
+            throw e
+        } catch (e: Exception) {
+            logger.debug("Failed to validate YouTrack command: ${e.message}")
+            listOf()
+        }
     }
 
     override fun apply(file: PsiFile, ranges: List<CommandHighlightRange>, holder: AnnotationHolder) {
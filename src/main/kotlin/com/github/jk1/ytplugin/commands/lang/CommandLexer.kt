@@ -0,0 +1,118 @@
+package com.github.jk1.ytplugin.commands.lang
+
+import com.github.jk1.ytplugin.commands.CommandVocabulary
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.ANY_TEXT
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.COLON
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.FIELD
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.HASH
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.KEYWORD
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.LBRACE
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.RBRACE
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.STRING
+import com.intellij.lexer.LexerBase
+import com.intellij.psi.TokenType
+import com.intellij.psi.tree.IElementType
+
+/**
+ * Splits YouTrack command into words, braced and quoted values. Words are classified as fields and keywords
+ * by their position ("State: Fixed", "#Fixed") and by the vocabulary learned from previous server responses,
+ * so the command is highlighted at once. The server still has the final say, see [CommandHighlightingAnnotator].
+ *
+ * Lexer state is kept in a single int, which allows the editor to restart lexing from any token.
+ */
+class CommandLexer(private val vocabulary: CommandVocabulary? = null) : LexerBase() {
+
+    companion object {
+        private const val DEFAULT = 0
+        private const val IN_BRACES = 1
+        private const val AFTER_HASH = 2
+
+        private const val DELIMITERS = "{}:#\""
+
+        // available even before the first server response
+        private val KEYWORDS = setOf("add", "remove", "tag", "untag", "star", "unstar", "vote", "unvote",
+                "work", "for", "me", "comment", "visible", "to")
+    }
+
+    private lateinit var buffer: CharSequence
+    private var bufferEnd = 0
+    private var tokenStart = 0
+    private var tokenEnd = 0
+    private var tokenType: IElementType? = null
+    private var state = DEFAULT
+    // state to start the next token with
+    private var nextState = DEFAULT
+
+    override fun start(buffer: CharSequence, startOffset: Int, endOffset: Int, initialState: Int) {
+        this.buffer = buffer
+        this.bufferEnd = endOffset
+        this.tokenEnd = startOffset
+        this.nextState = initialState
+        advance()
+    }
+
+    override fun getState() = state
+
+    override fun getTokenType() = tokenType
+
+    override fun getTokenStart() = tokenStart
+
+    override fun getTokenEnd() = tokenEnd
+
+    override fun getBufferSequence() = buffer
+
+    override fun getBufferEnd() = bufferEnd
+
+    override fun advance() {
+        tokenStart = tokenEnd
+        state = nextState
+        if (tokenStart >= bufferEnd) {
+            tokenType = null
+            return
+        }
+        val char = buffer[tokenStart]
+        when {
+            state == IN_BRACES && char == '}' -> token(RBRACE, tokenStart + 1, DEFAULT)
+            state == IN_BRACES -> token(STRING, skipUntil(tokenStart) { it == '}' }, IN_BRACES)
+            char.isWhitespace() -> token(TokenType.WHITE_SPACE, skipUntil(tokenStart) { !it.isWhitespace() }, DEFAULT)
+            char == '{' -> token(LBRACE, tokenStart + 1, IN_BRACES)
+            char == '}' -> token(RBRACE, tokenStart + 1, DEFAULT)
+            char == ':' -> token(COLON, tokenStart + 1, DEFAULT)
+            char == '#' -> token(HASH, tokenStart + 1, AFTER_HASH)
+            char == '"' -> {
+                val closing = skipUntil(tokenStart + 1) { it == '"' }
+                token(STRING, minOf(closing + 1, bufferEnd), DEFAULT)
+            }
+            else -> {
+                val end = skipUntil(tokenStart) { it.isWhitespace() || DELIMITERS.contains(it) }
+                token(classify(end), end, DEFAULT)
+            }
+        }
+    }
+
+    private fun classify(wordEnd: Int): IElementType {
+        if (state == AFTER_HASH || (wordEnd < bufferEnd && buffer[wordEnd] == ':')) {
+            return FIELD
+        }
+        val word = buffer.subSequence(tokenStart, wordEnd).toString().lowercase()
+        return when (vocabulary?.styleOf(word)) {
+            CommandVocabulary.FIELD -> FIELD
+            CommandVocabulary.KEYWORD -> KEYWORD
+            else -> if (KEYWORDS.contains(word)) KEYWORD else ANY_TEXT
+        }
+    }
+
+    private fun token(type: IElementType, end: Int, next: Int) {
+        tokenType = type
+        tokenEnd = end
+        nextState = next
+    }
+
+    private fun skipUntil(from: Int, stop: (Char) -> Boolean): Int {
+        var offset = from
+        while (offset < bufferEnd && !stop(buffer[offset])) {
+            offset++
+        }
+        return offset
+    }
+}
@@ -6,7 +6,6 @@ import com.intellij.lang.ParserDefinition
 import com.intellij.lang.PsiBuilder
 import com.intellij.lang.PsiParser
 import com.intellij.lexer.Lexer
-import com.intellij.lexer.LexerBase
 import com.intellij.openapi.project.Project
 import com.intellij.psi.FileViewProvider
 import com.intellij.psi.PsiElement
@@ -19,6 +18,14 @@ class CommandParserDefinition : ParserDefinition {
 
     companion object {
         val ANY_TEXT = IElementType("ANY_TEXT", CommandLanguage)
+        val FIELD = IElementType("FIELD", CommandLanguage)
+        val KEYWORD = IElementType("KEYWORD", CommandLanguage)
+        val STRING = IElementType("STRING", CommandLanguage)
+        val LBRACE = IElementType("LBRACE", CommandLanguage)
+        val RBRACE = IElementType("RBRACE", CommandLanguage)
+        val COLON = IElementType("COLON", CommandLanguage)
+        val HASH = IElementType("HASH", CommandLanguage)
+        val WORDS = TokenSet.create(ANY_TEXT, FIELD, KEYWORD)
         val QUERY = IElementType("QUERY", CommandLanguage)
         private val FILE = IFileElementType(CommandLanguage)
     }
@@ -27,10 +34,11 @@ class CommandParserDefinition : ParserDefinition {
 
     override fun getCommentTokens(): TokenSet = TokenSet.EMPTY
 
-    override fun getStringLiteralElements(): TokenSet = TokenSet.EMPTY
+    override fun getStringLiteralElements(): TokenSet = TokenSet.create(STRING)
 
-    override fun getWhitespaceTokens(): TokenSet = TokenSet.EMPTY
+    override fun getWhitespaceTokens(): TokenSet = TokenSet.WHITE_SPACE
 
+    // vocabulary is for highlighting only, PSI must not depend on what the server has told us so far
     override fun createLexer(project: Project): Lexer = CommandLexer()
 
     override fun createParser(project: Project): PsiParser = CommandPsiParser()
@@ -44,37 +52,6 @@ class CommandParserDefinition : ParserDefinition {
      */
     class CommandQueryElement(node: ASTNode) : ASTWrapperPsiElement(node)
 
-    /**
-     * Tokenize whole command as single {@code ANY_TEXT} token
-     */
-    inner class CommandLexer : LexerBase() {
-        private var start: Int = 0
-        private var end: Int = 0
-        private lateinit var buffer: CharSequence
-
-        override fun start(buffer: CharSequence , startOffset: Int, endOffset: Int, initialState: Int) {
-            this.buffer = buffer
-            this.start = startOffset
-            this.end = endOffset
-        }
-
-        override fun getState(): Int = 0
-
-        override fun getTokenType(): IElementType? = if (start >= end) null else ANY_TEXT
-
-        override fun getTokenStart() = start
-
-        override fun getTokenEnd() = end
-
-        override fun getBufferSequence() = buffer
-
-        override fun getBufferEnd() = end
-
-        override fun advance() {
-            start = end
-        }
-    }
-
     /**
      * Parse whole YouTrack command as single {@code QUERY} element
      */
@@ -83,8 +60,9 @@ class CommandParserDefinition : ParserDefinition {
         override fun parse(root: IElementType, builder: PsiBuilder): ASTNode {
             val rootMarker = builder.mark()
             val queryMarker = builder.mark()
-            assert(builder.tokenType == null || builder.tokenType == ANY_TEXT)
-            builder.advanceLexer()
+            while (!builder.eof()) {
+                builder.advanceLexer()
+            }
             queryMarker.done(QUERY)
             assert(builder.eof())
             rootMarker.done(root)
@@ -0,0 +1,44 @@
+package com.github.jk1.ytplugin.commands.lang
+
+import com.github.jk1.ytplugin.commands.CommandVocabulary
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.FIELD
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.HASH
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.KEYWORD
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.LBRACE
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.RBRACE
+import com.github.jk1.ytplugin.commands.lang.CommandParserDefinition.Companion.STRING
+import com.intellij.openapi.editor.DefaultLanguageHighlighterColors
+import com.intellij.openapi.editor.colors.TextAttributesKey
+import com.intellij.openapi.fileTypes.SyntaxHighlighter
+import com.intellij.openapi.fileTypes.SyntaxHighlighterBase
+import com.intellij.openapi.fileTypes.SyntaxHighlighterFactory
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.tree.IElementType
+
+/**
+ * Local highlighting for YouTrack commands, uses the same colors as [CommandHighlightingAnnotator] does
+ */
+class CommandSyntaxHighlighter(private val vocabulary: CommandVocabulary?) : SyntaxHighlighterBase() {
+
+    companion object {
+        private val ATTRIBUTES = mapOf(
+                FIELD to DefaultLanguageHighlighterColors.CONSTANT,
+                HASH to DefaultLanguageHighlighterColors.CONSTANT,
+                KEYWORD to DefaultLanguageHighlighterColors.KEYWORD,
+                STRING to DefaultLanguageHighlighterColors.STRING,
+                LBRACE to DefaultLanguageHighlighterColors.BRACES,
+                RBRACE to DefaultLanguageHighlighterColors.BRACES
+        )
+    }
+
+    override fun getHighlightingLexer() = CommandLexer(vocabulary)
+
+    override fun getTokenHighlights(tokenType: IElementType): Array<TextAttributesKey> = pack(ATTRIBUTES[tokenType])
+}
+
+class CommandSyntaxHighlighterFactory : SyntaxHighlighterFactory() {
+
+    override fun getSyntaxHighlighter(project: Project?, virtualFile: VirtualFile?): SyntaxHighlighter =
+            CommandSyntaxHighlighter(project?.getService(CommandVocabulary::class.java))
+}
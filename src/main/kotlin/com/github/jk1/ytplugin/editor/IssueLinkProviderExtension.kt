@@ -7,11 +7,13 @@ import com.github.jk1.ytplugin.editor.IssueNavigationLinkFactory.pointsTo
 import com.github.jk1.ytplugin.editor.IssueNavigationLinkFactory.setProjects
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.rest.AdminRestClient
+import com.github.jk1.ytplugin.rest.RefreshScheduler
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.intellij.concurrency.JobScheduler
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.startup.StartupActivity
+import com.intellij.openapi.util.ActionCallback
 import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.vcs.IssueNavigationConfiguration
 import com.intellij.openapi.vcs.IssueNavigationLink
@@ -24,36 +26,46 @@ class IssueLinkProviderExtension : StartupActivity.Background {
     }
 
     override fun runActivity(project: Project) {
-        // update navigation links every 30 min to recognize new projects
-        val projectListRefreshTask = JobScheduler.getScheduler().scheduleWithFixedDelay({
+        val components = ComponentAware.of(project)
+        val initialRefreshTask = JobScheduler.getScheduler().schedule({
             updateNavigationLinkPatterns(project)
-        }, 1, 60, TimeUnit.MINUTES)
+        }, 1, TimeUnit.MINUTES)
+        // update navigation links every hour to recognize new projects
+        components.refreshSchedulerComponent.register(RefreshScheduler.ISSUE_LINKS, 60, TimeUnit.MINUTES,
+                components.sourceNavigatorComponent, // any project-level disposable will do
+                servers = { components.taskManagerComponent.getAllConfiguredYouTrackRepositories() }) { server ->
+            updateNavigationLinkPattern(project, server)
+            ActionCallback.DONE
+        }
         // update navigation links when server connection configuration has been changed
-        ComponentAware.of(project).taskManagerComponent.addConfigurationChangeListener {
+        components.taskManagerComponent.addConfigurationChangeListener {
             updateNavigationLinkPatterns(project)
         }
-        Disposer.register(ComponentAware.of(project).sourceNavigatorComponent, // any project-level disposable will do
-                Disposable { projectListRefreshTask.cancel(false) })
+        Disposer.register(components.sourceNavigatorComponent, Disposable { initialRefreshTask.cancel(false) })
 
     }
 
     private fun updateNavigationLinkPatterns(project: Project) {
+        ComponentAware.of(project).taskManagerComponent.getAllConfiguredYouTrackRepositories().forEach { server ->
+            updateNavigationLinkPattern(project, server)
+        }
+    }
+
+    private fun updateNavigationLinkPattern(project: Project, server: YouTrackServer) {
         val navigationConfig = IssueNavigationConfiguration.getInstance(project)
         navigationConfig.links.remove(null) // where are these nulls coming from I wonder
-        ComponentAware.of(project).taskManagerComponent.getAllConfiguredYouTrackRepositories().forEach { server ->
-            val links = navigationConfig.links.filter { it.pointsTo(server) }
-            val generatedLinks = links.filter { it.createdByYouTrackPlugin }
-            if (links.isEmpty()) {
-                // no issue links to that server have been defined so far
-                val link = createNavigationLink(server.url)
-                updateIssueLinkProjects(link, server)
-                navigationConfig.links.add(link)
-            } else if (generatedLinks.isNotEmpty()) {
-                // there is a link created by plugin, let's actualize it
-                updateIssueLinkProjects(generatedLinks.first(), server)
-            } else {
-                logger.debug("Issue navigation link pattern for ${server.url} has been overridden and won't be updated")
-            }
+        val links = navigationConfig.links.filter { it.pointsTo(server) }
+        val generatedLinks = links.filter { it.createdByYouTrackPlugin }
+        if (links.isEmpty()) {
+            // no issue links to that server have been defined so far
+            val link = createNavigationLink(server.url)
+            updateIssueLinkProjects(link, server)
+            navigationConfig.links.add(link)
+        } else if (generatedLinks.isNotEmpty()) {
+            // there is a link created by plugin, let's actualize it
+            updateIssueLinkProjects(generatedLinks.first(), server)
+        } else {
+            logger.debug("Issue navigation link pattern for ${server.url} has been overridden and won't be updated")
         }
     }
 
@@ -0,0 +1,183 @@
+package com.github.jk1.ytplugin.issues
+
+import com.github.jk1.ytplugin.issues.model.Issue
+import com.github.jk1.ytplugin.issues.model.IssueWorkItem
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.rest.IssueJsonParser
+import com.google.gson.JsonParser
+import com.intellij.openapi.application.PathManager
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+import java.util.zip.CRC32
+import java.util.zip.CheckedOutputStream
+
+/**
+ * Versioned binary issue cache, one file per issue store. File layout:
+ *
+ * magic (int) | schema version (int) | store key | record count (int) | records | CRC32 of all preceding bytes (long)
+ *
+ * Store key and each record json are length-prefixed UTF-8 strings, records are preceded by a record type (byte).
+ * Files are named by a hash of the store key, the key itself is kept inside to tell hash collisions apart.
+ */
+class IssueCacheFile(val storeKey: String) {
+
+    companion object {
+        const val SCHEMA_VERSION = 2
+
+        private const val MAGIC = 0x59544943 // "YTIC"
+        private const val HEADER_SIZE = 12
+        private const val CHECKSUM_SIZE = 8
+        private const val ISSUE_RECORD: Byte = 1
+        private const val WORK_ITEM_RECORD: Byte = 2
+
+        private val directory: Path
+            get() = Paths.get(PathManager.getSystemPath(), "youtrack", "issues")
+
+        /**
+         * Store keys include search queries, which can be long and contain any characters, so they are hashed
+         */
+        fun fileName(storeKey: String): String {
+            val digest = MessageDigest.getInstance("SHA-1").digest(storeKey.toByteArray(StandardCharsets.UTF_8))
+            return digest.joinToString("", postfix = ".bin") { "%02x".format(it) }
+        }
+
+        /**
+         * Deletes a cache file by name, e.g. the one written with an outdated schema
+         */
+        fun deleteFile(fileName: String) {
+            Files.deleteIfExists(directory.resolve(fileName))
+        }
+    }
+
+    val path: Path = directory.resolve(fileName(storeKey))
+
+    fun exists() = Files.exists(path)
+
+    /**
+     * @return cached issues or null if there is no cache file of the current schema version
+     * @throws IOException if cache file is corrupted
+     */
+    fun read(repoUrl: String): List<Issue>? {
+        if (!exists()) {
+            return null
+        }
+        FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+            val size = channel.size()
+            if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Int.MAX_VALUE) {
+                throw IOException("Unexpected issue cache file size $size: $path")
+            }
+            // read to heap, as a mapped file can't be replaced on Windows until the mapping is garbage collected
+            val buffer = ByteBuffer.allocate(size.toInt())
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw IOException("Unexpected end of issue cache file: $path")
+                }
+            }
+            buffer.flip()
+            val checksum = CRC32()
+            val content = buffer.duplicate()
+            content.limit(size.toInt() - CHECKSUM_SIZE)
+            checksum.update(content)
+            if (checksum.value != buffer.getLong(size.toInt() - CHECKSUM_SIZE)) {
+                throw IOException("Issue cache file checksum mismatch: $path")
+            }
+            if (buffer.int != MAGIC) {
+                throw IOException("Not an issue cache file: $path")
+            }
+            val version = buffer.int
+            if (version != SCHEMA_VERSION) {
+                logger.debug("Issue cache schema version $version is not supported, ignoring $path")
+                return null
+            }
+            val key = buffer.readString()
+            if (key != storeKey) {
+                logger.debug("Issue cache file $path belongs to another store: $key")
+                return null
+            }
+            val issues = mutableListOf<Issue>()
+            val workItems = mutableListOf<IssueWorkItem>()
+            repeat(buffer.int) {
+                val type = buffer.get()
+                val element = JsonParser.parseString(buffer.readString())
+                when (type) {
+                    ISSUE_RECORD -> IssueJsonParser.parseIssue(element, repoUrl)?.let { issues.add(it) }
+                    WORK_ITEM_RECORD -> IssueJsonParser.parseWorkItem(element)?.let { workItems.add(it) }
+                    else -> throw IOException("Unknown issue cache record type $type: $path")
+                }
+            }
+            val workItemsByIssue = workItems.groupBy { it.issueId }
+            issues.forEach { issue ->
+                workItemsByIssue[issue.id]?.let { issue.workItems = it.toMutableList() }
+            }
+            return issues
+        }
+    }
+
+    /**
+     * Writes issues to a temporary file first and then moves it in place, so that an interrupted write
+     * never leaves a half-written cache behind.
+     */
+    fun write(issues: List<Issue>) {
+        write(issues.map { it.json }, issues.flatMap { it.workItems }.map { it.json })
+    }
+
+    /**
+     * @param issues issue json, possibly with work items inside
+     */
+    fun write(issues: List<String>, workItems: List<String>) {
+        Files.createDirectories(path.parent)
+        val tempFile = path.resolveSibling("${path.fileName}.tmp")
+        val checksum = CRC32()
+        Files.newOutputStream(tempFile).buffered().use { stream ->
+            val out = DataOutputStream(CheckedOutputStream(stream, checksum))
+            out.writeInt(MAGIC)
+            out.writeInt(SCHEMA_VERSION)
+            out.writeString(storeKey)
+            out.writeInt(issues.size + workItems.size)
+            issues.forEach { out.writeRecord(ISSUE_RECORD, it) }
+            workItems.forEach { out.writeRecord(WORK_ITEM_RECORD, it) }
+            out.flush()
+            DataOutputStream(stream).writeLong(checksum.value)
+        }
+        try {
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } catch (e: AtomicMoveNotSupportedException) {
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING)
+        }
+    }
+
+    fun delete() {
+        Files.deleteIfExists(path)
+    }
+
+    private fun DataOutputStream.writeRecord(type: Byte, json: String) {
+        writeByte(type.toInt())
+        writeString(json)
+    }
+
+    private fun DataOutputStream.writeString(value: String) {
+        val bytes = value.toByteArray(StandardCharsets.UTF_8)
+        writeInt(bytes.size)
+        write(bytes)
+    }
+
+    private fun ByteBuffer.readString(): String {
+        val length = int
+        if (length < 0 || length > remaining()) {
+            throw IOException("Malformed issue cache record length $length: $path")
+        }
+        val bytes = ByteArray(length)
+        get(bytes)
+        return String(bytes, StandardCharsets.UTF_8)
+    }
+}
@@ -5,19 +5,58 @@ import com.github.jk1.ytplugin.issues.model.Issue
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.rest.IssuesRestClient
 import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.progress.ProgressIndicator
 import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.ActionCallback
 import java.net.SocketTimeoutException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 
-class IssueStore(@Volatile private var issues: List<Issue> = listOf()) : Iterable<Issue> {
+/**
+ * Issues matching a search query on a YouTrack server. The store is shared by all the open projects
+ * configured with the same server account and search query, see [PersistentIssueStore].
+ */
+class IssueStore(issues: List<Issue> = listOf()) : Iterable<Issue> {
 
+    companion object {
+        // every n-th incremental refresh also checks which issues still match the search to evict resolved or deleted ones
+        private const val RECONCILIATION_PERIOD = 6
+        // compensates for the clock and time zone difference between IDE and YouTrack server
+        private val UPDATED_SINCE_OVERLAP = TimeUnit.DAYS.toMillis(1)
+    }
+
+    @Volatile
+    private var snapshot = Snapshot(issues)
+    private var issues: List<Issue>
+        get() = snapshot.issues
+        set(value) {
+            snapshot = Snapshot(value)
+        }
     private var currentCallback: ActionCallback = ActionCallback.Done()
+    // search query the stored issues have been loaded for, null until the first full refresh
+    @Volatile
+    private var syncedQuery: String? = null
+    private var refreshesSinceReconciliation = 0
+    @Volatile
+    private var lastUpdated = 0L
+    private val subscribers: MutableSet<Project> = ConcurrentHashMap.newKeySet()
 
-    fun update(repo: YouTrackServer): ActionCallback {
-        if (!isUpdating()) {
+    /**
+     * Refreshes the store from the server. Unless full sync is requested explicitly, only issues updated
+     * since the last refresh are fetched and merged into the store whenever it is possible.
+     *
+     * @param ifOlderThan skips the refresh if the store has been refreshed that many ms ago or later,
+     * e.g. by another project sharing the store
+     */
+    fun update(repo: YouTrackServer, fullSync: Boolean = false, ifOlderThan: Long = 0): ActionCallback {
+        if (!isUpdating() && System.currentTimeMillis() - lastUpdated >= ifOlderThan) {
             logger.debug("Issue store refresh scheduled for project ${repo.project.name} and YouTrack server ${repo.url}")
             currentCallback = ActionCallback()
+            if (fullSync) {
+                syncedQuery = null
+            }
             RefreshIssuesTask(currentCallback, repo).queue()
         }
         return currentCallback
@@ -25,35 +64,105 @@ class IssueStore(@Volatile private var issues: List<Issue> = listOf()) : Iterabl
 
     fun isUpdating() = !currentCallback.isDone
 
+    /**
+     * @return true if the project has not been subscribed before
+     */
+    fun subscribe(project: Project) = subscribers.add(project)
+
+    /**
+     * @return true if no projects are subscribed to the store anymore
+     */
+    fun unsubscribe(project: Project): Boolean {
+        subscribers.remove(project)
+        return subscribers.isEmpty()
+    }
+
+    private fun notifySubscribers(repo: YouTrackServer) {
+        (subscribers + repo.project).filterNot { it.isDisposed }.forEach {
+            ComponentAware.of(it).issueUpdaterComponent.onAfterUpdate()
+        }
+    }
+
     fun getAllIssues() = issues
 
     fun getIssue(index: Int) = issues[index]
 
-    fun getIndex(issue: Issue) = issues.indexOf(issue)
+    fun getIndex(issue: Issue): Int {
+        val current = snapshot
+        return current.indexById[issue.id]?.takeIf { current.issues[it] == issue } ?: -1
+    }
 
-    fun getIssueById(id: String): Issue? =  issues.firstOrNull { it.issueId == id}
+    fun getIssueById(id: String): Issue? {
+        val current = snapshot
+        return current.indexById[id]?.let { current.issues[it] }
+    }
 
     override fun iterator() = issues.iterator()
 
+    /**
+     * Issue list along with an id index for it. Snapshot is replaced as a whole on every update,
+     * so readers always see the list and the index consistent with each other.
+     */
+    private class Snapshot(val issues: List<Issue>) {
+        val indexById: Map<String, Int> = HashMap<String, Int>(issues.size * 2).also { index ->
+            issues.forEachIndexed { i, issue -> index.putIfAbsent(issue.id, i) }
+        }
+    }
+
     inner class RefreshIssuesTask(private val future: ActionCallback, private val repo: YouTrackServer) :
             Task.Backgroundable(repo.project, "Updating issues from server", true, ALWAYS_BACKGROUND) {
 
         override fun run(indicator: ProgressIndicator) {
             try {
-                logger.debug("Fetching issues for search query: ${repo.defaultSearch}")
-                issues = IssuesRestClient(repo).getIssues(repo.defaultSearch)
+                val query = repo.defaultSearch
+                val client = IssuesRestClient(repo)
+                issues = if (canSyncIncrementally(query)) {
+                    logger.debug("Fetching issue updates for search query: $query")
+                    syncIncrementally(client, query)
+                } else {
+                    logger.debug("Fetching issues for search query: $query")
+                    refreshesSinceReconciliation = 0
+                    client.getIssues(query, indicator) { loaded ->
+                        // display the first pages while the rest is still loading
+                        issues = loaded
+                        notifySubscribers(repo)
+                    }
+                }
+                syncedQuery = query
+                lastUpdated = System.currentTimeMillis()
+                ComponentAware.of(repo.project).serverBackoffComponent.onSuccess(repo)
             } catch (e: SocketTimeoutException) {
-                displayErrorMessage("Failed to updated issues from YouTrack server. Request timed out.", e)
+                onError("Failed to updated issues from YouTrack server. Request timed out.", e)
             } catch (e: Exception) {
-                displayErrorMessage("Can't connect to YouTrack server. Are you offline?", e)
+                onError("Can't connect to YouTrack server. Are you offline?", e)
             }
         }
 
-        private fun displayErrorMessage(message: String, exception: Exception){
+        // explicit sort order can't be preserved when merging updates into the store
+        private fun canSyncIncrementally(query: String) =
+                query == syncedQuery && issues.isNotEmpty() && !query.contains("sort by", true)
+
+        private fun syncIncrementally(client: IssuesRestClient, query: String): List<Issue> {
+            val since = issues.maxOf { it.updateDate.time } - UPDATED_SINCE_OVERLAP
+            val updated = client.getIssuesUpdatedSince(query, since)
+            val updatedIds = updated.map { it.id }.toSet()
+            var merged = updated + issues.filterNot { updatedIds.contains(it.id) }
+            if (++refreshesSinceReconciliation >= RECONCILIATION_PERIOD) {
+                refreshesSinceReconciliation = 0
+                val actualIds = client.getIssueIds(query).toSet()
+                merged = merged.filter { actualIds.contains(it.id) }
+            }
+            logger.debug("Merged ${updated.size} updated issues into the store for ${repo.url}")
+            return merged.sortedByDescending { it.updateDate }
+        }
+
+        private fun onError(message: String, exception: Exception) {
             logger.info("YouTrack issues refresh failed: ${exception.message}")
             logger.debug(exception)
             title = " $message"
-            Thread.sleep(15000) // display error message for a while
+            ComponentAware.of(repo.project).serverBackoffComponent.onFailure(repo, message, "issues") {
+                ApplicationManager.getApplication().invokeLater({ update(repo) }, repo.project.disposed)
+            }
         }
 
         override fun onCancel() {
@@ -64,7 +173,7 @@ class IssueStore(@Volatile private var issues: List<Issue> = listOf()) : Iterabl
         override fun onSuccess() {
             future.setDone()
             logger.debug("Issue store has been updated for YouTrack server ${repo.url}")
-            ComponentAware.of(repo.project).issueUpdaterComponent.onAfterUpdate()
+            notifySubscribers(repo)
         }
     }
 }
\ No newline at end of file
@@ -1,13 +1,13 @@
 package com.github.jk1.ytplugin.issues
 
 import com.github.jk1.ytplugin.ComponentAware
-import com.intellij.concurrency.JobScheduler
+import com.github.jk1.ytplugin.rest.RefreshScheduler
+import com.github.jk1.ytplugin.rest.RefreshScheduler.Companion.toolWindowVisibility
+import com.github.jk1.ytplugin.rest.RefreshScheduler.Companion.updateOnEdt
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.project.Project
-import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
-import javax.swing.SwingUtilities
 
 /**
  * Manages timed issue store updates for active projects
@@ -18,21 +18,19 @@ import javax.swing.SwingUtilities
 class IssueStoreUpdaterService(override val project: Project) : Disposable, ComponentAware {
 
     //  todo: customizable update interval
-    private val timedRefreshTask: ScheduledFuture<*> =
-            JobScheduler.getScheduler().scheduleWithFixedDelay({
-                SwingUtilities.invokeLater {
-                    if (!project.isDisposed) {
-                        taskManagerComponent.getAllConfiguredYouTrackRepositories().forEach {
-                            issueStoreComponent[it].update(it)
-                        }
-                    }
-                }
-            }, 5, 5, TimeUnit.MINUTES)
+    init {
+        refreshSchedulerComponent.register(RefreshScheduler.ISSUES, 5, TimeUnit.MINUTES, this,
+                servers = { taskManagerComponent.getAllConfiguredYouTrackRepositories() },
+                isVisible = toolWindowVisibility(project, this)) { repo ->
+            // the store might have been just refreshed for another project sharing it
+            updateOnEdt(project) { issueStoreComponent[repo].update(repo, ifOlderThan = TimeUnit.MINUTES.toMillis(1)) }
+        }
+    }
 
     private val listeners: MutableSet<() -> Unit> = mutableSetOf()
 
     override fun dispose() {
-        timedRefreshTask.cancel(true)
+        // refresh subscription is disposed along with the service
     }
 
     fun subscribe(listener: () -> Unit) {
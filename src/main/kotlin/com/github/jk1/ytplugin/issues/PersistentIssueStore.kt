@@ -1,74 +1,229 @@
 package com.github.jk1.ytplugin.issues
 
+import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.issues.PersistentIssueStore.Memento
+import com.github.jk1.ytplugin.issues.model.Issue
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.rest.IssueJsonParser
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.google.gson.JsonParser
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.PersistentStateComponent
 import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.SettingsSavingComponent
 import com.intellij.openapi.components.State
 import com.intellij.openapi.components.Storage
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
+import com.intellij.util.concurrency.AppExecutorUtil
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 
 /**
  * Application-scoped persistent issue data cache. Issue data is persisted in a home folder instead of
  * a project directory. This comes in handy for projects with /.idea under VCS control.
+ *
+ * Issues themselves are kept in per-server binary cache files (see [IssueCacheFile]), while issues.xml
+ * only maps YouTrack servers to these files. Cache files are loaded on first access and written off the EDT
+ * when the IDE saves its settings, see [flush].
+ *
+ * Stores are keyed by server account and search query, so projects connected to the same server with the same
+ * account and search share a single store. Projects are subscribed to the stores they use, a store nobody
+ * is subscribed to anymore is dropped from memory and is only kept in its cache file. Cache files of the stores
+ * no project has opened for a month are deleted, so are the per-project caches of older plugin versions
+ * once their issues are saved under the new store key.
  */
 @Service
 @State(name = "YouTrack Issues", storages = [(Storage(value = "issues.xml"))])
-class PersistentIssueStore : PersistentStateComponent<Memento> {
+class PersistentIssueStore : PersistentStateComponent<Memento>, SettingsSavingComponent, Disposable {
+
+    companion object {
+        private val UNUSED_CACHE_TTL = TimeUnit.DAYS.toMillis(30)
+    }
 
-    private var loadedMemento: Memento = Memento()
     private val stores = ConcurrentHashMap<String, IssueStore>()
+    // keys of the stores with cache files mapped to the last time the store was opened
+    private val cacheFiles = ConcurrentHashMap<String, Long>()
+    // legacy per-project keys the stores have been loaded from, see [loadStore]
+    private val legacyKeys = ConcurrentHashMap<String, String>()
+    // issue json from issues.xml of older plugin versions, kept until moved to a cache file
+    private val legacyIssues = ConcurrentHashMap<String, String>()
+    // issue lists last written to the cache files, stores are only written when their issue list changes
+    private val persistedIssues = ConcurrentHashMap<String, List<Issue>>()
+    // issue lists waiting for the cache writer
+    private val queuedIssues = ConcurrentHashMap<String, List<Issue>>()
+    // issues of the dropped stores, that might have not been written to the cache files yet
+    private val idleIssues = ConcurrentHashMap<String, List<Issue>>()
+    private val cacheWriter = AppExecutorUtil.createBoundedApplicationPoolExecutor("YouTrack Issue Cache Writer", 1)
 
-    override fun getState() = Memento(stores)
+    override fun getState() = Memento(cacheFiles, legacyIssues)
 
     override fun loadState(state: Memento) {
-        loadedMemento = state
+        val now = System.currentTimeMillis()
+        if (state.schemaVersion == IssueCacheFile.SCHEMA_VERSION) {
+            state.cacheFiles.keys.forEach { cacheFiles.putIfAbsent(it, state.lastUsed[it] ?: now) }
+        } else if (state.cacheFiles.isNotEmpty()) {
+            // files of an unknown schema are never read, stores are reloaded from the server instead
+            logger.debug("Issue cache schema version ${state.schemaVersion} is not supported, dropping cache files")
+            state.cacheFiles.values.forEach { fileName ->
+                cacheWriter.execute {
+                    try {
+                        IssueCacheFile.deleteFile(fileName)
+                    } catch (e: Exception) {
+                        logger.warn("Failed to delete issue cache file $fileName", e)
+                    }
+                }
+            }
+        }
+        legacyIssues.putAll(state.persistentIssues)
+        // all the inline issue json is migrated at once, not only for the stores opened in this session
+        state.persistentIssues.forEach { (key, json) -> cacheWriter.execute { migrate(key, json) } }
+    }
+
+    override fun save() = flush()
+
+    /**
+     * Schedules cache file writes for all the stores with issue lists changed since the last write
+     * and deletes cache files nobody has used for a while
+     */
+    fun flush() {
+        stores.forEach { (key, store) -> scheduleWrite(key, store.getAllIssues()) }
+        idleIssues.forEach { (key, issues) -> scheduleWrite(key, issues) }
+        val expiresBefore = System.currentTimeMillis() - UNUSED_CACHE_TTL
+        cacheFiles.filter { (key, lastUsed) -> lastUsed < expiresBefore && !stores.containsKey(key) }.keys.forEach {
+            logger.debug("Issue store $it hasn't been used for a while, dropping its file cache")
+            dropCacheFile(it)
+        }
     }
 
     operator fun get(repo: YouTrackServer): IssueStore {
-        return stores.getOrPut(repo.id, {
+        val key = storeKey(repo)
+        cacheFiles[key] = System.currentTimeMillis()
+        val store = stores.getOrPut(key, {
             logger.debug("Issue store opened for YouTrack server ${repo.url}")
-            loadedMemento.getStore(repo)
+            idleIssues.remove(key)?.let { IssueStore(it) } ?: loadStore(repo, key)
         })
+        if (store.subscribe(repo.project)) {
+            Disposer.register(ComponentAware.of(repo.project).projectDisposable,
+                    Disposable { release(key, store, repo.project) })
+        }
+        return store
     }
 
     fun remove(repo: YouTrackServer) {
-        stores.remove(repo.id)
+        stores.remove(storeKey(repo))
     }
 
-    class Memento constructor() {
-
-        // should stay mutable and public for serialization to work
-        var persistentIssues: Map<String, String> = mutableMapOf()
+    private fun release(key: String, store: IssueStore, project: Project) {
+        if (store.unsubscribe(project) && stores.remove(key, store)) {
+            logger.debug("Issue store $key closed, no projects use it anymore")
+            val issues = store.getAllIssues()
+            idleIssues[key] = issues
+            scheduleWrite(key, issues)
+        }
+    }
 
+    private fun storeKey(repo: YouTrackServer) = "${repo.accountId} ${repo.defaultSearch}"
 
-        // primary constructor is reserved for serializer
-        constructor(stores: Map<String, IssueStore>) : this() {
-            persistentIssues = stores.mapValues { "[${it.value.joinToString(", ") { it.json }}]" }
-//            for (item in stores.values){
-//                val issues = item.getAllIssues()
-//                for (issue in issues){
-//                    persistentWorkItems.addAll(issue.workItems)
-//                }
-//            }
+    private fun loadStore(repo: YouTrackServer, key: String): IssueStore {
+        try {
+            val cached = IssueCacheFile(key).read(repo.url)
+            if (cached != null) {
+                logger.debug("Issue store file cache loaded for ${repo.url} with a total of ${cached.size}")
+                return IssueStore(cached).also { persistedIssues[key] = it.getAllIssues() }
+            }
+            // stores used to be kept per project before, such caches are picked up until refreshed
+            val legacy = (if (cacheFiles.containsKey(repo.id)) IssueCacheFile(repo.id).read(repo.url) else null)
+                    ?: legacyIssues[repo.id]?.let { json ->
+                        JsonParser.parseString(json).asJsonArray.mapNotNull { IssueJsonParser.parseIssue(it, repo.url) }
+                    }
+            if (legacy != null) {
+                legacyKeys[key] = repo.id
+            }
+            return legacy?.let { IssueStore(it) } ?: IssueStore()
+        } catch (e: Exception) {
+            logger.warn("Failed to load issue store file cache for ${repo.url}", e)
+            return IssueStore()
         }
+    }
 
-        fun getStore(repo: YouTrackServer): IssueStore {
-            try {
-                val issuesJson = persistentIssues[repo.id] ?: return IssueStore()
+    private fun scheduleWrite(key: String, issues: List<Issue>) {
+        if (persistedIssues[key] === issues || queuedIssues.put(key, issues) === issues) {
+            return
+        }
+        cacheWriter.execute {
+            // a newer issue list might have been queued meanwhile
+            if (queuedIssues[key] === issues && cacheFiles.containsKey(key) && writeCacheFile(key, issues)) {
+                persistedIssues[key] = issues
+                // the store doesn't need its legacy per-project cache anymore
+                legacyKeys.remove(key)?.let { dropCacheFile(it) }
+            }
+            // failed writes are retried on the next flush
+            queuedIssues.remove(key, issues)
+        }
+    }
 
-                val issues = JsonParser.parseString(issuesJson).asJsonArray
-                        .mapNotNull { IssueJsonParser.parseIssue(it, repo.url) }
+    private fun migrate(key: String, json: String) {
+        if (legacyIssues[key] !== json) {
+            return // dropped meanwhile
+        }
+        try {
+            val issues = JsonParser.parseString(json).asJsonArray.map { it.toString() }
+            IssueCacheFile(key).write(issues, listOf())
+            cacheFiles.putIfAbsent(key, System.currentTimeMillis())
+            legacyIssues.remove(key, json)
+            logger.debug("Issue store for $key migrated to a file cache with a total of ${issues.size}")
+        } catch (e: Exception) {
+            logger.warn("Failed to migrate issue store for $key to a file cache", e)
+        }
+    }
 
-                logger.debug("Issue store file cache loaded for ${repo.url} with a total of ${issues.size}")
-                return IssueStore(issues)
+    private fun dropCacheFile(key: String) {
+        cacheFiles.remove(key)
+        legacyIssues.remove(key)
+        idleIssues.remove(key)
+        persistedIssues.remove(key)
+        cacheWriter.execute {
+            try {
+                IssueCacheFile(key).delete()
             } catch (e: Exception) {
-                logger.warn("Failed to load issue store file cache for ${repo.url}", e)
-                return IssueStore()
+                logger.warn("Failed to delete issue store file cache for $key", e)
             }
         }
     }
-}
\ No newline at end of file
+
+    override fun dispose() {
+        flush()
+        cacheWriter.shutdown()
+        cacheWriter.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    private fun writeCacheFile(key: String, issues: List<Issue>): Boolean {
+        return try {
+            IssueCacheFile(key).write(issues)
+            logger.debug("Issue store file cache saved for $key with a total of ${issues.size}")
+            true
+        } catch (e: Exception) {
+            logger.warn("Failed to save issue store file cache for $key", e)
+            false
+        }
+    }
+
+    class Memento constructor() {
+
+        // should stay mutable and public for serialization to work
+        var schemaVersion: Int = 0
+        var cacheFiles: Map<String, String> = mutableMapOf()
+        // issues.xml of older plugin versions holds all the issue json inline, it's kept until migrated
+        var persistentIssues: Map<String, String> = mutableMapOf()
+        var lastUsed: Map<String, Long> = mutableMapOf()
+
+        // primary constructor is reserved for serializer
+        constructor(cacheFiles: Map<String, Long>, legacyIssues: Map<String, String>) : this() {
+            schemaVersion = IssueCacheFile.SCHEMA_VERSION
+            this.cacheFiles = cacheFiles.keys.associateWith { IssueCacheFile.fileName(it) }
+            persistentIssues = HashMap(legacyIssues)
+            lastUsed = HashMap(cacheFiles)
+        }
+    }
+}
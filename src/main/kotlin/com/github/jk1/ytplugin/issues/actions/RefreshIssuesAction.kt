@@ -20,7 +20,7 @@ class RefreshIssuesAction(val repo: YouTrackServer) : IssueAction() {
     override fun actionPerformed(event: AnActionEvent) {
         event.whenActive { project ->
             logger.debug("Issue store refresh requested for ${repo.url}")
-            ComponentAware.of(project).issueStoreComponent[repo].update(repo)
+            ComponentAware.of(project).issueStoreComponent[repo].update(repo, fullSync = true)
         }
     }
 
@@ -83,9 +83,9 @@ class Issue(item: JsonElement, val repoUrl: String) : YouTrackIssue {
 
     override fun toString() = "$id $summary" // Quick search in issue list relies on that
 
-    override fun equals(other: Any?) = toString() == other?.toString()
+    override fun equals(other: Any?) = other is Issue && id == other.id && repoUrl == other.repoUrl
 
-    override fun hashCode(): Int = toString().hashCode()
+    override fun hashCode(): Int = 31 * repoUrl.hashCode() + id.hashCode()
 
 }
 
@@ -0,0 +1,123 @@
+package com.github.jk1.ytplugin.notifications
+
+import com.github.jk1.ytplugin.ComponentAware
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.rest.NotificationsRestClient
+import com.github.jk1.ytplugin.rest.RefreshScheduler
+import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.notification.NotificationGroupManager
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.ActionCallback
+import com.intellij.openapi.wm.IdeFocusManager
+import java.util.concurrent.CopyOnWriteArraySet
+import java.util.concurrent.TimeUnit
+import javax.swing.SwingUtilities
+
+/**
+ * Polls YouTrack servers for new notifications. Each server account is polled once per round, no matter
+ * how many open projects are configured with it. Only notification ids are fetched on every poll, notification
+ * bodies are downloaded for the unseen ids only.
+ *
+ * Polls are run by [RefreshScheduler], so poll interval grows while the IDE is in background.
+ */
+@Service
+class NotificationsFetcherService : Disposable {
+
+    companion object {
+        private const val POLL_INTERVAL_SEC = 60L
+    }
+
+    private val projects = CopyOnWriteArraySet<Project>()
+
+    init {
+        ApplicationManager.getApplication().getService(RefreshScheduler::class.java)
+                .register(RefreshScheduler.NOTIFICATIONS, POLL_INTERVAL_SEC, TimeUnit.SECONDS, this,
+                        servers = { getServers() }) { repo ->
+                    poll(repo)
+                    ActionCallback.DONE
+                }
+    }
+
+    fun register(project: Project) {
+        projects.add(project)
+    }
+
+    fun unregister(project: Project) {
+        projects.remove(project)
+    }
+
+    override fun dispose() {
+        // poll subscription is disposed along with the service
+    }
+
+    private fun getServers() = projects.filterNot { it.isDisposed }
+            .flatMap { ComponentAware.of(it).taskManagerComponent.getAllConfiguredYouTrackRepositories() }
+
+    private fun poll(repo: YouTrackServer) {
+        // the same server account may be configured in several open projects
+        val candidates = getServers().filter { it.accountId == repo.accountId }.map { it.project }
+        val backoff = ComponentAware.of(repo.project).serverBackoffComponent
+        logger.debug("Fetching notifications from YouTrack server ${repo.url}")
+        try {
+            fetch(repo, candidates.ifEmpty { listOf(repo.project) })
+            backoff.onSuccess(repo)
+        } catch (e: Exception) {
+            logger.warn("Failed to fetch notifications from YouTrack server: ${e.message}")
+            logger.debug(e)
+            backoff.onFailure(repo, "Can't connect to YouTrack server. Are you offline?")
+        }
+    }
+
+    private fun fetch(repo: YouTrackServer, projects: List<Project>) {
+        val client = NotificationsRestClient(repo)
+        val ids = client.getNotificationIds()
+        if (ids.isEmpty()) {
+            return
+        }
+        val server = repo.accountId
+        val seen = ApplicationManager.getApplication().getService(SeenNotificationsStore::class.java)
+        val unseenPositions = ids.indices.filterNot { seen.isSeen(server, ids[it]) }
+        if (unseenPositions.isEmpty()) {
+            return
+        }
+        // download only the range of notifications holding the unseen ones
+        val skip = unseenPositions.first()
+        val fetched = client.getNotifications(skip, unseenPositions.last() - skip + 1)
+        val unseen = fetched.filterNot { seen.isSeen(server, it.id) || it.recipient == "guest" }
+        logger.debug("Fetched ${ids.size} notification ids, ${unseen.size} new")
+        unseen.forEach { handleNotification(it, selectProject(projects)) }
+        // notifications shifted out of the requested range by concurrent updates will be fetched next time
+        seen.markSeen(server, ids, fetched.map { it.id })
+    }
+
+    private fun selectProject(candidates: List<Project>): Project {
+        val focused = IdeFocusManager.getGlobalInstance().lastFocusedFrame?.project
+        return candidates.firstOrNull { it == focused } ?: candidates.first()
+    }
+
+    private fun handleNotification(incoming: YouTrackNotification, project: Project) {
+        SwingUtilities.invokeLater {
+            try {
+                with(incoming) {
+                    val group = NotificationGroupManager.getInstance().getNotificationGroup("YouTrack Notifications")
+                    val notification = group.createNotification(issueId, content, NotificationType.INFORMATION)
+                    notification.subtitle = summary
+
+                    notification.addAction(BrowseNotificationAction(incoming))
+                    notification.addAction(DismissNotificationAction(notification))
+                    notification.addAction(ConfigureNotificationsAction(incoming))
+                    if (!project.isDisposed) {
+                        notification.notify(project)
+                    }
+                }
+            } catch (e: Exception) {
+                logger.warn("Failed to decode YouTrack notification ${incoming.id}: ${e.message}")
+                logger.debug(e)
+            }
+        }
+    }
+}
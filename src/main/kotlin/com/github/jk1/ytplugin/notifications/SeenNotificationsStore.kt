@@ -0,0 +1,89 @@
+package com.github.jk1.ytplugin.notifications
+
+import com.github.jk1.ytplugin.notifications.SeenNotificationsStore.Memento
+import com.intellij.ide.util.PropertiesComponent
+import com.intellij.openapi.components.PersistentStateComponent
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.State
+import com.intellij.openapi.components.Storage
+
+/**
+ * Remembers which notifications have already been shown, per server account. YouTrack entity ids end with
+ * a sequence number, so every notification up to a high-water mark is considered seen. Seen ids above
+ * the mark (or ones without a sequence number) are kept in a small bounded list.
+ */
+@Service
+@State(name = "YouTrack Seen Notifications", storages = [(Storage(value = "youtrackNotifications.xml"))])
+class SeenNotificationsStore : PersistentStateComponent<Memento> {
+
+    companion object {
+        private const val MAX_RECENT_IDS = 256
+        // plugin versions before used to keep all seen ids of all servers in a single property
+        private const val LEGACY_PERSISTENT_KEY = "com.jetbrains.youtrack.notifications"
+    }
+
+    private var memento = Memento()
+
+    private val legacySeenIds: List<String> by lazy {
+        val properties = PropertiesComponent.getInstance()
+        val ids = properties.getValue(LEGACY_PERSISTENT_KEY, "").split(" ").filter { it.isNotEmpty() }
+        properties.unsetValue(LEGACY_PERSISTENT_KEY)
+        ids
+    }
+
+    override fun getState() = memento
+
+    override fun loadState(state: Memento) {
+        memento = state
+    }
+
+    fun isSeen(server: String, id: String): Boolean {
+        val state = getServerState(server)
+        synchronized(state) {
+            val sequence = id.sequence()
+            return (sequence != null && sequence <= state.highWaterMark) || state.recentIds.contains(id)
+        }
+    }
+
+    /**
+     * @param allIds ids of all the notifications on the server
+     * @param seenIds notifications that have been shown to the user during this poll
+     */
+    fun markSeen(server: String, allIds: List<String>, seenIds: Collection<String>) {
+        val state = getServerState(server)
+        synchronized(state) {
+            val recent = LinkedHashSet(state.recentIds + seenIds)
+            // the mark may only advance up to the oldest notification that has not been shown yet
+            val limit = allIds.filterNot { it.isSeen(state, recent) }.mapNotNull { it.sequence() }.minOrNull()
+                    ?.minus(1) ?: Long.MAX_VALUE
+            val seenSequences = allIds.filter { it.isSeen(state, recent) }.mapNotNull { it.sequence() }
+            state.highWaterMark = maxOf(state.highWaterMark, seenSequences.filter { it <= limit }.maxOrNull() ?: -1)
+            state.recentIds = recent.filter { (it.sequence() ?: Long.MAX_VALUE) > state.highWaterMark }
+                    .takeLast(MAX_RECENT_IDS).toMutableList()
+        }
+    }
+
+    private fun getServerState(server: String): ServerState {
+        synchronized(memento) {
+            return memento.servers.getOrPut(server) { ServerState().also { it.recentIds.addAll(legacySeenIds) } }
+        }
+    }
+
+    private fun String.isSeen(state: ServerState, recent: Set<String>): Boolean {
+        val sequence = sequence()
+        return (sequence != null && sequence <= state.highWaterMark) || recent.contains(this)
+    }
+
+    private fun String.sequence() = substringAfterLast('-', "").toLongOrNull()
+
+    class ServerState {
+        // should stay mutable and public for serialization to work
+        var highWaterMark: Long = -1
+        var recentIds: MutableList<String> = mutableListOf()
+    }
+
+    class Memento {
+        // should stay mutable and public for serialization to work
+        var servers: MutableMap<String, ServerState> = mutableMapOf()
+    }
+}
@@ -7,28 +7,23 @@ import java.io.ByteArrayOutputStream
 import java.util.*
 import java.util.zip.GZIPInputStream
 
+/**
+ * Notification content and metadata arrive gzipped and base64-encoded. They are only decoded
+ * once the notification is actually displayed.
+ */
 class YouTrackNotification(item: JsonElement, val repoUrl: String) {
 
-    val id: String
-    val recipient: String
-    val content: String
-    val metadata: String
-    val issueId: String
-    val summary: String
-    val url: String
+    private val root = item.asJsonObject
 
-    init {
-        val root = item.asJsonObject
-        id = root.get("id").asString
-        metadata = decode(root.get("metadata").asString)
-        recipient = item.asJsonObject.get("recipient")?.asJsonObject?.get("login")?.asString ?: ""
-        val metadataElement = JsonParser.parseString(metadata).asJsonObject
-        val issueElement = metadataElement.get("issue").asJsonObject
-        issueId = issueElement.get("id").asString
-        summary = htmlEscape(issueElement.get("summary").asString, "UTF-8")
-        url = "$repoUrl/issue/$issueId"
-        content = prettifyContent(decode(root.get("content").asString))
-    }
+    val id: String = root.get("id").asString
+    val recipient: String = root.get("recipient")?.asJsonObject?.get("login")?.asString ?: ""
+
+    val metadata: String by lazy { decode(root.get("metadata").asString) }
+    private val issueElement by lazy { JsonParser.parseString(metadata).asJsonObject.get("issue").asJsonObject }
+    val issueId: String by lazy { issueElement.get("id").asString }
+    val summary: String by lazy { htmlEscape(issueElement.get("summary").asString, "UTF-8") }
+    val url: String by lazy { "$repoUrl/issue/$issueId" }
+    val content: String by lazy { prettifyContent(decode(root.get("content").asString)) }
 
     private fun decode(content: String): String {
         val gzipInput = ByteArrayInputStream(Base64.getDecoder().decode(content))
@@ -4,6 +4,7 @@ import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.google.gson.JsonArray
 import com.google.gson.JsonObject
+import com.intellij.openapi.application.ApplicationManager
 import org.apache.http.client.methods.HttpGet
 import org.apache.http.client.methods.HttpPost
 import org.apache.http.client.utils.URIBuilder
@@ -14,21 +15,27 @@ class AdminRestClient(override val repository: YouTrackServer) : AdminRestClient
     override fun getVisibilityGroups(issueId: String): List<String> {
         val builder = URIBuilder("${repository.url}/api/visibilityGroups")
         builder.setParameter("\$top", "-1")
-                .setParameter("fields", "groupsWithoutRecommended(name),recommendedGroups(name)")
+                .setParameter("fields", "groupsWithoutRecommended(id,name),recommendedGroups(id,name)")
         val method = HttpPost(builder.build())
         val res: URL? = this::class.java.classLoader.getResource("admin_body.json")
         val jsonBody = res?.readText()?.replace("{issueId}", issueId, true)
         method.entity = jsonBody?.jsonEntity
         return method.execute {
-            listOf("All Users") +
-                    parseGroupNames(it.asJsonObject, "recommendedGroups") +
-                    parseGroupNames(it.asJsonObject, "groupsWithoutRecommended")
+            val groups = parseGroups(it.asJsonObject, "recommendedGroups") +
+                    parseGroups(it.asJsonObject, "groupsWithoutRecommended")
+            // group ids are needed to post a comment visible to the chosen group only
+            ApplicationManager.getApplication().getService(ReferenceDataCache::class.java)
+                    .putAll(repository, ReferenceDataCache.USER_GROUPS, groups.toMap())
+            listOf("All Users") + groups.map { group -> group.first }
         }
     }
 
-    private fun parseGroupNames(myObject: JsonObject, elem: String): List<String> {
+    /**
+     * @return group names paired with ids
+     */
+    private fun parseGroups(myObject: JsonObject, elem: String): List<Pair<String, String>> {
         val recommendedGroups: JsonArray = myObject.get(elem) as JsonArray
-        return recommendedGroups.map { it.asJsonObject.get("name").asString }
+        return recommendedGroups.map { it.asJsonObject.get("name").asString to it.asJsonObject.get("id").asString }
     }
 
     override fun getAccessibleProjects(): List<String> {
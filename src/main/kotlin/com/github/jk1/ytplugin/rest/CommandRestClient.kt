@@ -7,6 +7,7 @@ import com.github.jk1.ytplugin.commands.model.YouTrackCommandExecution
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.google.gson.*
+import com.intellij.openapi.application.ApplicationManager
 import org.apache.http.client.methods.HttpGet
 import org.apache.http.client.methods.HttpPost
 import org.apache.http.client.utils.URIBuilder
@@ -32,20 +33,29 @@ class CommandRestClient(override val repository: YouTrackServer) : CommandRestCl
         }
     }
 
+    /**
+     * Group ids are usually cached along with the visibility groups offered in the command window.
+     * All the groups are listed only if the group is not cached or the cache has expired.
+     */
     private fun getGroupId(command: YouTrackCommandExecution): String {
-        // todo: load groups with ids to avoid this lookup completely
-        val builder = URIBuilder("${repository.url}/api/groups?\$top=1000")
-        builder.setParameter("fields", "name,id,allUsersGroup")
-        val getMethod = HttpGet(builder.build())
-        return try {
-            getMethod.execute { element ->
-                element.asJsonArray.first {
-                    command.commentVisibleGroup == it.asJsonObject.get("name").asString
-                }.asJsonObject.get("id").asString
-            }
+        val cache = ApplicationManager.getApplication().getService(ReferenceDataCache::class.java)
+        val cached = cache.getIfPresent<Map<String, String>>(repository, ReferenceDataCache.USER_GROUPS)
+        cached?.get(command.commentVisibleGroup)?.let { return it }
+        val groups = try {
+            loadGroups().also { cache.putAll(repository, ReferenceDataCache.USER_GROUPS, it) }
         } catch (e: Exception) {
             logger.warn("Failed to fetch possible groups ids in CommandRestClient", e)
-            throw IllegalStateException("User group '${command.commentVisibleGroup}' cannot be found")
+            mapOf()
+        }
+        return groups[command.commentVisibleGroup]
+                ?: throw IllegalStateException("User group '${command.commentVisibleGroup}' cannot be found")
+    }
+
+    private fun loadGroups(): Map<String, String> {
+        val builder = URIBuilder("${repository.url}/api/groups?\$top=1000")
+        builder.setParameter("fields", "name,id")
+        return HttpGet(builder.build()).execute { element ->
+            element.asJsonArray.associate { it.asJsonObject.get("name").asString to it.asJsonObject.get("id").asString }
         }
     }
 
@@ -14,7 +14,10 @@ class CustomAttributesClient (override val repository: YouTrackServer) : RestCli
     fun getCustomAttributesForProjectInCallable(projectId: String): Map<String, List<String>>{
         val future = ApplicationManager.getApplication().executeOnPooledThread (
             Callable {
-                checkIfProjectHasCustomAttributes(projectId)
+                val cache = ApplicationManager.getApplication().getService(ReferenceDataCache::class.java)
+                cache.getOrLoad(repository, "${ReferenceDataCache.WORK_ITEM_ATTRIBUTES} $projectId", { it.isNotEmpty() }) {
+                    checkIfProjectHasCustomAttributes(projectId)
+                }
             })
         return future.get() ?: mapOf()
     }
@@ -0,0 +1,170 @@
+package com.github.jk1.ytplugin.rest
+
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.vfs.CharsetToolkit
+import com.intellij.util.net.HttpConfigurable
+import com.intellij.util.net.IdeHttpClientHelpers
+import com.intellij.util.net.ssl.CertificateManager
+import org.apache.http.HttpRequest
+import org.apache.http.HttpRequestInterceptor
+import org.apache.http.auth.AuthScope
+import org.apache.http.auth.UsernamePasswordCredentials
+import org.apache.http.client.CredentialsProvider
+import org.apache.http.client.config.AuthSchemes
+import org.apache.http.client.config.RequestConfig
+import org.apache.http.client.protocol.HttpClientContext
+import org.apache.http.config.RegistryBuilder
+import org.apache.http.conn.routing.HttpRoute
+import org.apache.http.conn.socket.ConnectionSocketFactory
+import org.apache.http.conn.socket.PlainConnectionSocketFactory
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory
+import org.apache.http.impl.auth.BasicScheme
+import org.apache.http.impl.client.BasicCredentialsProvider
+import org.apache.http.impl.client.CloseableHttpClient
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy
+import org.apache.http.impl.client.HttpClients
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager
+import org.apache.http.pool.PoolStats
+import org.apache.http.protocol.HttpContext
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Keeps one pooled keep-alive http client per YouTrack server and account, so that consequent requests
+ * reuse already established (and TLS-negotiated) connections instead of building a new client every time.
+ *
+ * Clients are rebuilt transparently once server credentials or IDE proxy settings change.
+ */
+@Service
+class HttpClientRegistry : Disposable {
+
+    companion object {
+        private const val MAX_CONNECTIONS_TOTAL = 20
+        private const val MAX_CONNECTIONS_PER_ROUTE = 10
+        private const val DEFAULT_KEEP_ALIVE_MS = 30000L
+        private const val IDLE_CONNECTION_TIMEOUT_SEC = 60L
+    }
+
+    private val clients = ConcurrentHashMap<String, PooledClient>()
+
+    operator fun get(repository: YouTrackServer): CloseableHttpClient {
+        val fingerprint = repository.fingerprint()
+        val pooled = clients.compute(repository.accountId) { _, existing ->
+            if (existing == null || existing.fingerprint != fingerprint) {
+                existing?.let {
+                    logger.debug("Connection settings changed for ${repository.url}, discarding pooled http client")
+                    it.close()
+                }
+                logger.debug("Pooled http client created for YouTrack server ${repository.url}")
+                PooledClient(fingerprint, repository)
+            } else {
+                existing
+            }
+        }!!
+        return pooled.client
+    }
+
+    fun invalidate(repository: YouTrackServer) {
+        clients.remove(repository.accountId)?.let {
+            logger.debug("Pooled http client invalidated for YouTrack server ${repository.url}, " +
+                    "pool stats: ${it.connectionManager.totalStats}")
+            it.close()
+        }
+    }
+
+    fun invalidateAll() {
+        clients.keys.toList().forEach { key -> clients.remove(key)?.close() }
+    }
+
+    /**
+     * Connection pool statistics by server url and account, mostly useful for debugging
+     */
+    fun getPoolStats(): Map<String, PoolStats> = clients.mapValues { it.value.connectionManager.totalStats }
+
+    override fun dispose() {
+        invalidateAll()
+    }
+
+    private fun YouTrackServer.fingerprint(): Int {
+        val proxy = HttpConfigurable.getInstance()
+        return listOf(url, username, password, useProxy,
+                proxy.USE_HTTP_PROXY, proxy.USE_PROXY_PAC, proxy.PROXY_HOST, proxy.PROXY_PORT,
+                proxy.PROXY_AUTHENTICATION, proxy.proxyLogin, proxy.plainProxyPassword).hashCode()
+    }
+
+    private class PooledClient(val fingerprint: Int, repository: YouTrackServer) {
+
+        val connectionManager: PoolingHttpClientConnectionManager
+        val client: CloseableHttpClient
+
+        init {
+            val socketFactories = RegistryBuilder.create<ConnectionSocketFactory>()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", SSLConnectionSocketFactory(CertificateManager.getInstance().sslContext))
+                    .build()
+            connectionManager = PoolingHttpClientConnectionManager(socketFactories)
+            connectionManager.maxTotal = MAX_CONNECTIONS_TOTAL
+            connectionManager.defaultMaxPerRoute = MAX_CONNECTIONS_PER_ROUTE
+
+            val requestConfigBuilder = RequestConfig.custom()
+                    .setConnectTimeout(30000)  // ms
+                    .setSocketTimeout(30000)   // ms
+            if (repository.useProxy) {
+                IdeHttpClientHelpers.ApacheHttpClient4.setProxyForUrlIfEnabled(requestConfigBuilder, repository.url)
+            }
+            val credentialsProvider: CredentialsProvider = BasicCredentialsProvider()
+            // Basic authentication
+            credentialsProvider.setCredentials(AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT, AuthScope.ANY_REALM, AuthSchemes.BASIC),
+                    UsernamePasswordCredentials(repository.username, repository.password))
+            // Proxy authentication
+            if (repository.useProxy) {
+                IdeHttpClientHelpers.ApacheHttpClient4.setProxyCredentialsForUrlIfEnabled(credentialsProvider, repository.url)
+            }
+            client = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setKeepAliveStrategy { response, context ->
+                        val keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context)
+                        if (keepAlive > 0) keepAlive else DEFAULT_KEEP_ALIVE_MS
+                    }
+                    .evictExpiredConnections()
+                    .evictIdleConnections(IDLE_CONNECTION_TIMEOUT_SEC, TimeUnit.SECONDS)
+                    .setDefaultRequestConfig(requestConfigBuilder.build())
+                    .setDefaultCredentialsProvider(credentialsProvider)
+                    .addInterceptorFirst(PreemptiveBasicAuthInterceptor())
+                    .addInterceptorLast { request: HttpRequest, _: HttpContext ->
+                        request.setHeader("Accept", "application/json")
+                        request.setHeader("User-Agent", "YouTrack IDE Plugin")
+                    }
+                    .build()
+        }
+
+        fun close() {
+            try {
+                client.close()
+            } catch (e: Exception) {
+                logger.debug("Failed to close pooled http client: ${e.message}")
+            }
+        }
+    }
+
+    private class PreemptiveBasicAuthInterceptor : HttpRequestInterceptor {
+        override fun process(request: HttpRequest, context: HttpContext) {
+            val provider = context.getAttribute(HttpClientContext.CREDS_PROVIDER) as CredentialsProvider
+            val credentials = provider.getCredentials(AuthScope(AuthScope.ANY_HOST, AuthScope.ANY_PORT, AuthScope.ANY_REALM, AuthSchemes.BASIC))
+            if (credentials != null) {
+                request.addHeader(BasicScheme(StandardCharsets.UTF_8).authenticate(credentials, request, context))
+            }
+            val proxyHost = (context.getAttribute(HttpClientContext.HTTP_ROUTE) as HttpRoute).proxyHost
+            if (proxyHost != null) {
+                val proxyCredentials = provider.getCredentials(AuthScope(proxyHost))
+                if (proxyCredentials != null) {
+                    request.addHeader(BasicScheme.authenticate(proxyCredentials, CharsetToolkit.UTF8, true))
+                }
+            }
+        }
+    }
+}
@@ -3,9 +3,15 @@ package com.github.jk1.ytplugin.rest
 import com.github.jk1.ytplugin.issues.model.*
 import com.github.jk1.ytplugin.logger
 import com.google.gson.JsonElement
+import com.google.gson.JsonParser
+import com.google.gson.stream.JsonReader
 
 object IssueJsonParser {
 
+    fun parseIssues(reader: JsonReader, url: String) = parseArray(reader) { parseIssue(it, url) }
+
+    fun parseWorkItems(reader: JsonReader) = parseArray(reader) { parseWorkItem(it) }
+
     fun parseIssue(element: JsonElement, url: String) = parseSafe(element) { Issue(element, url) }
 
     fun parseWorkItem(element: JsonElement) = parseSafe(element) { IssueWorkItem(element) }
@@ -20,6 +26,20 @@ object IssueJsonParser {
 
     fun parseAttachment(element: JsonElement, url: String) = parseSafe(element) { Attachment(element, url) }
 
+    /**
+     * Reads json array from the stream element by element, so that only a single element json tree
+     * is kept in memory at a time. Elements failed to parse are skipped.
+     */
+    fun <T> parseArray(reader: JsonReader, elementParser: (JsonElement) -> T?): List<T> {
+        val result = mutableListOf<T>()
+        reader.beginArray()
+        while (reader.hasNext()) {
+            elementParser.invoke(JsonParser.parseReader(reader))?.let { result.add(it) }
+        }
+        reader.endArray()
+        return result
+    }
+
     private fun <T> parseSafe(element: JsonElement, parser: () -> T): T? {
         return try {
             parser.invoke()
@@ -6,12 +6,16 @@ import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.setup.getInstanceVersion
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.github.jk1.ytplugin.timeTracker.TrackerNotification
-import com.google.gson.*
+import com.intellij.ide.util.PropertiesComponent
 import com.intellij.notification.NotificationType
+import com.intellij.openapi.progress.ProgressIndicator
 import org.apache.http.client.methods.HttpGet
 import org.apache.http.client.methods.HttpPost
 import org.apache.http.client.utils.URIBuilder
 import java.net.URL
+import java.text.SimpleDateFormat
+import java.util.*
+import kotlin.math.min
 
 /**
  * Fetches YouTrack issues with issue description formatted from wiki into html on server side.
@@ -25,6 +29,18 @@ class IssuesRestClient(override val repository: YouTrackServer) : IssuesRestClie
                 "author(name,login),deleted),summary,wikifiedDescription,customFields(name,color," +
                 "value(name,minutes,presentation,markdownText,color(background,foreground))," +
                 "id,projectCustomField(emptyFieldText)),resolved,attachments(name,url),reporter(login)"
+        const val WORK_ITEM_FIELDS = "text,type(name),created,issue(idReadable)," +
+                "duration(presentation,minutes),author(name),creator(name),date,id,attributes(name,id,value(name))"
+        // keeps request url well below the common 8k limit of proxies and servlet containers
+        private const val MAX_WORK_ITEMS_QUERY_LENGTH = 2000
+        private const val PAGE_SIZE = 100
+        private const val MAX_ISSUES_KEY = "youtrack.issues.max"
+        private const val DEFAULT_MAX_ISSUES = 500
+
+        /**
+         * Upper bound for the number of issues loaded for a single search
+         */
+        fun getMaxIssues() = PropertiesComponent.getInstance().getInt(MAX_ISSUES_KEY, DEFAULT_MAX_ISSUES)
     }
 
     override fun createDraft(summary: String): String? {
@@ -57,63 +73,112 @@ class IssuesRestClient(override val repository: YouTrackServer) : IssuesRestClie
         val builder = URIBuilder("${repository.url}/api/issues/$id")
         builder.addParameter("fields", ISSUE_FIELDS)
         val method = HttpGet(builder.build())
-        return method.execute { element ->
-            val issuesWithWorkItems: List<JsonElement> = mapWorkItemsWithIssues(listOf(element))
-            val fullIssues = parseIssues(issuesWithWorkItems)
-            logger.debug("Successfully fetched issue: $id")
-            fullIssues[0]
+        val issue = method.execute { element ->
+            IssueParser().parseIssue(element, repository.url)
         }
+        mapWorkItemsWithIssues(listOf(issue))
+        logger.debug("Successfully fetched issue: $id")
+        return issue
     }
 
-    private fun mapWorkItemsWithIssues(issues: Iterable<JsonElement>): List<JsonElement> {
-        val newIssues = mutableListOf<JsonElement>()
-        for (issue in issues) {
-            val id = issue.asJsonObject.get("idReadable").asString
-            val workItems = getWorkItems(id)
-            var workItemsJson: String
-            if (workItems.isEmpty()) {
-                workItemsJson = "\"workItems\": []"
-            } else {
-                workItemsJson = "\"workItems\": ["
-                for (x in 0..workItems.size - 2) {
-                    workItemsJson += "${workItems[x].json},"
-                }
-                workItemsJson += "${workItems.last().json}]"
-            }
-            // add workItems to issue
-            val issueString = issue.toString().substring(0, issue.toString().length - 1) + ",\n$workItemsJson\n}"
-            newIssues.add(JsonParser.parseString(issueString) as JsonElement)
+    /**
+     * Loads work items for all the issues given at once and attaches them to the issues,
+     * so that a refresh costs a constant number of round trips.
+     */
+    private fun mapWorkItemsWithIssues(issues: List<Issue>): List<Issue> {
+        val workItems = getWorkItems(issues.map { it.id })
+        issues.forEach { issue ->
+            issue.workItems = workItems[issue.id]?.toMutableList() ?: mutableListOf()
         }
-        return newIssues
+        return issues
     }
 
-    private fun parseIssues(json: List<JsonElement>): List<Issue> {
-        return json.map { IssueParser().parseIssue(it.asJsonObject, repository.url) }
+    override fun getIssues(query: String): List<Issue> = getIssues(query, null)
+
+    /**
+     * Loads issues page by page until the search result is exhausted, [maxIssues] limit is reached
+     * or the [indicator] is cancelled. All the issues loaded so far are reported to [pageListener]
+     * after every page, so that callers can display first results without waiting for the rest.
+     */
+    fun getIssues(query: String, indicator: ProgressIndicator?, maxIssues: Int = getMaxIssues(),
+                  pageListener: (List<Issue>) -> Unit = {}): List<Issue> {
+        val issues = mutableListOf<Issue>()
+        val loadedIds = mutableSetOf<String>()
+        var skip = 0
+        while (issues.size < maxIssues && indicator?.isCanceled != true) {
+            val pageSize = min(PAGE_SIZE, maxIssues - issues.size)
+            val page = getIssuesPage(query, skip, pageSize)
+            skip += page.size
+            // issues updated in between page requests may shift and appear twice
+            issues.addAll(page.filter { loadedIds.add(it.id) })
+            pageListener.invoke(issues.toList())
+            if (page.size < pageSize) {
+                break
+            }
+        }
+        logger.debug("Loaded ${issues.size} issues for search query: $query")
+        return issues
     }
 
-    override fun getIssues(query: String): List<Issue> {
-        // todo: customizable "max" limit
+    private fun getIssuesPage(query: String, skip: Int, top: Int): List<Issue> {
         val builder = URIBuilder("${repository.url}/api/issues")
         builder.addParameter("query", query)
-                .addParameter("\$top", "100")
+                .addParameter("\$skip", skip.toString())
+                .addParameter("\$top", top.toString())
                 .addParameter("fields", ISSUE_FIELDS)
         val method = HttpGet(builder.build())
-        return method.execute { element ->
-            val issues: JsonArray = element.asJsonArray
-            val issuesWithWorkItems: List<JsonElement> = mapWorkItemsWithIssues(issues)
-            parseIssues(issuesWithWorkItems)
+        val issues = method.executeStreaming { reader ->
+            IssueJsonParser.parseIssues(reader, repository.url)
         }
+        return mapWorkItemsWithIssues(issues)
+    }
+
+    override fun getIssuesUpdatedSince(query: String, timestamp: Long): List<Issue> {
+        val since = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(Date(timestamp))
+        val updatedQuery = if (query.isBlank()) "updated: $since .. *" else "($query) and updated: $since .. *"
+        return getIssues(updatedQuery)
     }
 
-    private fun getWorkItems(query: String): List<IssueWorkItem> {
-        val builder = URIBuilder("${repository.url}/api/workItems")
-        builder.addParameter("\$top", "100")
-                .addParameter("query", query)
-                .addParameter("fields", "text,type(name),created,issue(idReadable)," +
-                        "duration(presentation,minutes),author(name),creator(name),date,id,attributes(name,id,value(name))")
-                .addParameter("sort", "descending")
+    override fun getIssueIds(query: String): List<String> {
+        val builder = URIBuilder("${repository.url}/api/issues")
+        builder.addParameter("query", query)
+                .addParameter("\$top", getMaxIssues().toString())
+                .addParameter("fields", "idReadable")
         return HttpGet(builder.build()).execute { element ->
-            element.asJsonArray.mapNotNull { IssueJsonParser.parseWorkItem(it) }
+            element.asJsonArray.map { it.asJsonObject.get("idReadable").asString }
+        }
+    }
+
+    /**
+     * Fetches work items for a number of issues with as few requests as possible.
+     * Issue ids are split into several queries only when a single one would make request url too long.
+     *
+     * @return work items grouped by readable issue id
+     */
+    private fun getWorkItems(issueIds: List<String>): Map<String, List<IssueWorkItem>> {
+        val workItems = mutableListOf<IssueWorkItem>()
+        issueIds.chunkedByQueryLength().forEach { chunk ->
+            val builder = URIBuilder("${repository.url}/api/workItems")
+            builder.addParameter("\$top", "-1")
+                    .addParameter("query", "issue id: ${chunk.joinToString(", ")}")
+                    .addParameter("fields", WORK_ITEM_FIELDS)
+                    .addParameter("sort", "descending")
+            workItems.addAll(HttpGet(builder.build()).executeStreaming { IssueJsonParser.parseWorkItems(it) })
+        }
+        return workItems.groupBy { it.issueId }
+    }
+
+    private fun List<String>.chunkedByQueryLength(): List<List<String>> {
+        val chunks = mutableListOf<MutableList<String>>()
+        var queryLength = 0
+        forEach { id ->
+            if (chunks.isEmpty() || queryLength + id.length > MAX_WORK_ITEMS_QUERY_LENGTH) {
+                chunks.add(mutableListOf())
+                queryLength = 0
+            }
+            chunks.last().add(id)
+            queryLength += id.length + 2 // ", " separator
         }
+        return chunks
     }
 }
\ No newline at end of file
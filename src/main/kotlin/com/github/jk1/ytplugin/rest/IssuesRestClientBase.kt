@@ -13,4 +13,8 @@ interface IssuesRestClientBase {
 
     fun getIssues(query: String = ""): List<Issue>
 
+    fun getIssuesUpdatedSince(query: String, timestamp: Long): List<Issue>
+
+    fun getIssueIds(query: String = ""): List<String>
+
 }
\ No newline at end of file
@@ -3,33 +3,64 @@ package com.github.jk1.ytplugin.rest
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.notifications.YouTrackNotification
 import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.google.gson.stream.JsonReader
+import org.apache.http.HttpStatus
 import org.apache.http.client.methods.HttpGet
-import org.apache.http.client.methods.HttpPost
 import org.apache.http.client.utils.URIBuilder
+import org.apache.http.util.EntityUtils
+import java.io.IOException
 
 class NotificationsRestClient(override val repository: YouTrackServer) : RestClientTrait, ResponseLoggerTrait {
 
-    fun getNotifications(): List<YouTrackNotification> {
+    /**
+     * Connection failures and server errors are thrown, so that the caller could back off
+     *
+     * @return ids of all the notifications available for the current user, in the server order
+     */
+    fun getNotificationIds(): List<String> {
         val builder = URIBuilder("${repository.url}/api/users/notifications")
         builder.setParameter("\$top", "-1")
+                .setParameter("fields", "id")
+        val method = HttpGet(builder.build())
+        return method.executeUnlessUnsupported { reader ->
+            IssueJsonParser.parseArray(reader) { it.asJsonObject.get("id").asString }
+        }
+    }
+
+    fun getNotifications(skip: Int = 0, top: Int = -1): List<YouTrackNotification> {
+        val builder = URIBuilder("${repository.url}/api/users/notifications")
+        builder.setParameter("\$skip", skip.toString())
+                .setParameter("\$top", top.toString())
                 .setParameter("fields", "id,recipient(login),content,metadata")
         val method = HttpGet(builder.build())
-        return try {
-            method.execute { element ->
-                element.asJsonArray
-                        .map { YouTrackNotification(it, repository.url) }
-                        .also { list ->
-                            if (list.isEmpty()) {
-                                logger.debug("No notifications for current user are available on YouTrack server")
-                            } else {
-                                logger.debug("Successfully fetched ${list.size} notifications")
-                            }
+        return method.executeUnlessUnsupported { reader ->
+            IssueJsonParser.parseArray(reader) { YouTrackNotification(it, repository.url) }
+                    .also { list ->
+                        if (list.isEmpty()) {
+                            logger.debug("No notifications for current user are available on YouTrack server")
+                        } else {
+                            logger.debug("Successfully fetched ${list.size} notifications")
                         }
+                    }
+        }
+    }
+
+    /**
+     * @return empty list if the server has no notifications api, any other error status is thrown
+     */
+    private fun <T> HttpGet.executeUnlessUnsupported(responseParser: (reader: JsonReader) -> List<T>): List<T> {
+        val response = httpClient.execute(this)
+        try {
+            return when (response.statusLine.statusCode) {
+                HttpStatus.SC_OK -> responseParser.invoke(JsonReader(response.responseBodyAsReader))
+                // persistent notifications are supported starting from YouTrack 2018.1
+                HttpStatus.SC_NOT_FOUND -> listOf()
+                else -> throw IOException("Notifications request failed with ${response.statusLine}: " +
+                        response.responseBodyAsLoggedString())
             }
-        } catch (e: Exception) {
-            // todo: distinguish 404 from other errors here
-            // persistent notifications are supported starting from YouTrack 2018.1
-            listOf()
+        } finally {
+            // closes the connection
+            EntityUtils.consume(response.entity)
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.github.jk1.ytplugin.rest
+
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.openapi.components.Service
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Per-server cache for rarely changing YouTrack data, like work item types, current user id,
+ * user group ids or project time tracking attributes. Values expire after a while and are dropped on demand,
+ * e.g. when the server rejects credentials or does not recognize a cached value anymore.
+ */
+@Service
+class ReferenceDataCache {
+
+    companion object {
+        private val TTL = TimeUnit.MINUTES.toMillis(30)
+
+        const val WORK_ITEM_TYPES = "workItemTypes"
+        const val CURRENT_USER_ID = "currentUserId"
+        const val WORK_ITEM_ATTRIBUTES = "workItemAttributes"
+        const val USER_GROUPS = "userGroups"
+    }
+
+    private class Entry(val value: Any, val expiresAt: Long)
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+
+    /**
+     * @param isValid results failing the check (e.g. empty ones after a network error) are returned, but not cached
+     */
+    fun <T : Any> getOrLoad(repo: YouTrackServer, key: String, isValid: (T) -> Boolean = { true }, loader: () -> T): T {
+        val cacheKey = repo.cacheKey(key)
+        val cached = entries[cacheKey]
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            @Suppress("UNCHECKED_CAST")
+            return cached.value as T
+        }
+        val value = loader.invoke()
+        if (isValid(value)) {
+            entries[cacheKey] = Entry(value, System.currentTimeMillis() + TTL)
+        }
+        return value
+    }
+
+    fun <T : Any> getIfPresent(repo: YouTrackServer, key: String): T? {
+        val cached = entries[repo.cacheKey(key)] ?: return null
+        @Suppress("UNCHECKED_CAST")
+        return if (cached.expiresAt > System.currentTimeMillis()) cached.value as T else null
+    }
+
+    /**
+     * Adds values to a cached map, it expires along with the values cached before
+     */
+    fun <K, V> putAll(repo: YouTrackServer, key: String, values: Map<K, V>) {
+        val now = System.currentTimeMillis()
+        entries.compute(repo.cacheKey(key)) { _, cached ->
+            if (cached != null && cached.expiresAt > now) {
+                @Suppress("UNCHECKED_CAST")
+                Entry((cached.value as Map<K, V>) + values, cached.expiresAt)
+            } else {
+                Entry(values, now + TTL)
+            }
+        }
+    }
+
+    fun invalidate(repo: YouTrackServer, key: String) {
+        entries.remove(repo.cacheKey(key))
+    }
+
+    fun invalidate(repo: YouTrackServer) {
+        val prefix = repo.cacheKey("")
+        entries.keys.removeIf { it.startsWith(prefix) }
+        logger.debug("Reference data cache invalidated for YouTrack server ${repo.url}")
+    }
+
+    private fun YouTrackServer.cacheKey(key: String) = "$accountId $key"
+}
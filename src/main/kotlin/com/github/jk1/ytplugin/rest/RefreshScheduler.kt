@@ -0,0 +1,189 @@
+package com.github.jk1.ytplugin.rest
+
+import com.github.jk1.ytplugin.ComponentAware
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.concurrency.JobScheduler
+import com.intellij.ide.IdeEventQueue
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.ActionCallback
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.wm.ToolWindowManager
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Runs periodic background refreshes (issues, work items, notifications, issue links) for all open projects.
+ * Refreshes of the same kind are grouped by server account: when several projects are configured with the same
+ * server, they are refreshed together within a single job run instead of each project ticking on its own.
+ *
+ * Refresh interval adapts to the IDE state: it grows while the IDE is idle or unfocused and shrinks while
+ * the data is on screen. Jobs are skipped while the server is backing off after connection failures.
+ */
+@Service
+class RefreshScheduler : Disposable {
+
+    companion object {
+        private const val TICK_SEC = 15L
+        private val IDLE_THRESHOLD = TimeUnit.MINUTES.toMillis(5)
+        private const val INACTIVE_FACTOR = 4
+        private const val VISIBLE_FACTOR = 2
+        private val REFRESH_TIMEOUT = TimeUnit.MINUTES.toMillis(2)
+        private val REFRESH_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(1)
+
+        const val ISSUES = "issues"
+        const val WORK_ITEMS = "workItems"
+        const val NOTIFICATIONS = "notifications"
+        const val ISSUE_LINKS = "issueLinks"
+
+        /**
+         * Tracks YouTrack tool window visibility, the returned function is safe to call from any thread
+         */
+        fun toolWindowVisibility(project: Project, parentDisposable: Disposable): () -> Boolean {
+            val visible = AtomicBoolean(false)
+            project.messageBus.connect(parentDisposable).subscribe(ToolWindowManagerListener.TOPIC,
+                    object : ToolWindowManagerListener {
+                        override fun stateChanged(toolWindowManager: ToolWindowManager) {
+                            visible.set(toolWindowManager.getToolWindow("YouTrack")?.isVisible == true)
+                        }
+                    })
+            return { visible.get() }
+        }
+
+        /**
+         * Starts a store update on EDT, returned callback is processed once the update is over
+         * or rejected if the project is closed before the update starts
+         */
+        fun updateOnEdt(project: Project, update: () -> ActionCallback): ActionCallback {
+            val callback = ActionCallback()
+            ApplicationManager.getApplication().invokeLater {
+                if (project.isDisposed) {
+                    callback.setRejected()
+                } else {
+                    update.invoke().notify(callback)
+                }
+            }
+            return callback
+        }
+    }
+
+    /**
+     * @param servers servers to refresh, evaluated on every tick to follow configuration changes
+     * @param isVisible true if refreshed data is displayed to the user right now
+     * @param refresh called on a background thread, returned callback is awaited to measure the refresh duration
+     */
+    private class Subscription(val kind: String, val interval: Long, val servers: () -> List<YouTrackServer>,
+                               val isVisible: () -> Boolean, val refresh: (YouTrackServer) -> ActionCallback)
+
+    class JobMetrics(val lastRunAt: Long, val lastDurationMs: Long, val runs: Int, val failures: Int,
+                     val consecutiveFailures: Int) {
+
+        override fun toString() = "last run at $lastRunAt took $lastDurationMs ms, " +
+                "$runs run(s), $failures failure(s), $consecutiveFailures in a row"
+    }
+
+    private class Job(val key: String) {
+        @Volatile
+        var running = false
+        @Volatile
+        var metrics = JobMetrics(0, 0, 0, 0, 0)
+    }
+
+    private val subscriptions = CopyOnWriteArrayList<Subscription>()
+    private val jobs = ConcurrentHashMap<String, Job>()
+    private val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("YouTrack Refresh", 2)
+    private val ticker = JobScheduler.getScheduler().scheduleWithFixedDelay({ tick() }, TICK_SEC, TICK_SEC, TimeUnit.SECONDS)
+
+    /**
+     * Registers periodic refresh until the parent disposable is disposed. First refresh happens after the interval.
+     */
+    fun register(kind: String, interval: Long, unit: TimeUnit, parentDisposable: Disposable,
+                 servers: () -> List<YouTrackServer>, isVisible: () -> Boolean = { false },
+                 refresh: (YouTrackServer) -> ActionCallback) {
+        val subscription = Subscription(kind, unit.toMillis(interval), servers, isVisible, refresh)
+        subscriptions.add(subscription)
+        Disposer.register(parentDisposable, Disposable { subscriptions.remove(subscription) })
+    }
+
+    /**
+     * @return refresh statistics keyed by job, e.g. "issues user@https://example.youtrack.cloud"
+     */
+    fun getMetrics(): Map<String, JobMetrics> = jobs.mapValues { it.value.metrics }
+
+    private fun tick() {
+        try {
+            val now = System.currentTimeMillis()
+            val inactive = !ApplicationManager.getApplication().isActive ||
+                    IdeEventQueue.getInstance().idleTime > IDLE_THRESHOLD
+            // subscriptions of the same kind for the same server account are handled by a single job
+            val targets = subscriptions.flatMap { subscription ->
+                subscription.servers().distinctBy { it.accountId }.map { subscription to it }
+            }.groupBy { "${it.first.kind} ${it.second.accountId}" }
+            jobs.keys.retainAll(targets.keys)
+            targets.forEach { (key, jobTargets) ->
+                val job = jobs.getOrPut(key) { Job(key).also { it.metrics = JobMetrics(now, 0, 0, 0, 0) } }
+                val visible = jobTargets.any { it.first.isVisible() }
+                val interval = jobTargets.minOf { it.first.interval } *
+                        (if (inactive) INACTIVE_FACTOR else 1) / (if (visible) VISIBLE_FACTOR else 1)
+                val repo = jobTargets.first().second
+                if (!job.running && now - job.metrics.lastRunAt >= interval &&
+                        ComponentAware.of(repo.project).serverBackoffComponent.isAvailable(repo)) {
+                    job.running = true
+                    executor.execute { run(job, jobTargets) }
+                }
+            }
+        } catch (e: Exception) {
+            logger.warn("Failed to schedule YouTrack refresh: ${e.message}")
+            logger.debug(e)
+        }
+    }
+
+    private fun run(job: Job, targets: List<Pair<Subscription, YouTrackServer>>) {
+        val start = System.currentTimeMillis()
+        var failed = false
+        try {
+            targets.filterNot { it.second.project.isDisposed }.forEach { (subscription, repo) ->
+                val callback = subscription.refresh(repo)
+                awaitRefresh(callback, repo.project)
+                if (repo.project.isDisposed) {
+                    return@forEach // closed project is not a refresh failure
+                }
+                // refresh failures are reported to the backoff service by the refreshed stores
+                failed = failed || !callback.isDone ||
+                        !ComponentAware.of(repo.project).serverBackoffComponent.isAvailable(repo)
+            }
+        } catch (e: Exception) {
+            failed = true
+            logger.warn("YouTrack refresh ${job.key} failed: ${e.message}")
+            logger.debug(e)
+        } finally {
+            val previous = job.metrics
+            job.metrics = JobMetrics(start, System.currentTimeMillis() - start, previous.runs + 1,
+                    previous.failures + if (failed) 1 else 0, if (failed) previous.consecutiveFailures + 1 else 0)
+            job.running = false
+            logger.debug("YouTrack refresh ${job.key}: ${job.metrics}")
+        }
+    }
+
+    /**
+     * Waits in short steps, so that a project closed mid-refresh doesn't hold an executor thread until timeout
+     */
+    private fun awaitRefresh(callback: ActionCallback, project: Project) {
+        val deadline = System.currentTimeMillis() + REFRESH_TIMEOUT
+        while (!callback.isProcessed && !project.isDisposed && System.currentTimeMillis() < deadline) {
+            callback.waitFor(REFRESH_POLL_INTERVAL)
+        }
+    }
+
+    override fun dispose() {
+        ticker.cancel(false)
+        subscriptions.clear()
+    }
+}
@@ -5,35 +5,20 @@ import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.github.jk1.ytplugin.timeTracker.TrackerNotification
 import com.google.gson.JsonElement
 import com.google.gson.JsonParser
+import com.google.gson.stream.JsonReader
 import com.intellij.notification.NotificationType
-import com.intellij.openapi.vfs.CharsetToolkit
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.tasks.TaskManager
 import com.intellij.tasks.impl.TaskManagerImpl
-import com.intellij.util.net.IdeHttpClientHelpers
-import com.intellij.util.net.ssl.CertificateManager
-import org.apache.http.HttpRequest
-import org.apache.http.HttpRequestInterceptor
 import org.apache.http.HttpResponse
 import org.apache.http.HttpStatus
-import org.apache.http.auth.AuthScope
-import org.apache.http.auth.AuthScope.*
-import org.apache.http.auth.UsernamePasswordCredentials
-import org.apache.http.client.CredentialsProvider
 import org.apache.http.client.HttpClient
-import org.apache.http.client.config.AuthSchemes
-import org.apache.http.client.config.RequestConfig
 import org.apache.http.client.methods.HttpUriRequest
-import org.apache.http.client.protocol.HttpClientContext
-import org.apache.http.conn.routing.HttpRoute
 import org.apache.http.entity.ContentType
 import org.apache.http.entity.StringEntity
-import org.apache.http.impl.auth.BasicScheme
-import org.apache.http.impl.client.BasicCredentialsProvider
-import org.apache.http.impl.client.HttpClientBuilder
-import org.apache.http.impl.client.HttpClients
-import org.apache.http.protocol.HttpContext
 import org.apache.http.util.EntityUtils
 import java.io.InputStreamReader
+import java.io.Reader
 import java.net.URLEncoder
 import java.nio.charset.StandardCharsets
 import java.util.*
@@ -47,41 +32,27 @@ interface RestClientTrait : ResponseLoggerTrait {
     val repository: YouTrackServer
 
     val httpClient: HttpClient
-        get() {
-            val requestConfigBuilder = RequestConfig.custom()
-                .setConnectTimeout(30000)  // ms
-                .setSocketTimeout(30000)   // ms
-            if (repository.useProxy) {
-                IdeHttpClientHelpers.ApacheHttpClient4.setProxyForUrlIfEnabled(requestConfigBuilder, repository.url)
-            }
-            val createCredentialsProvider: CredentialsProvider = BasicCredentialsProvider()
-            // Basic authentication
-            createCredentialsProvider.setCredentials(AuthScope(ANY_HOST, ANY_PORT, ANY_REALM, AuthSchemes.BASIC),
-                UsernamePasswordCredentials(repository.username, repository.password))
-            // Proxy authentication
-            if (repository.useProxy) {
-                IdeHttpClientHelpers.ApacheHttpClient4.setProxyCredentialsForUrlIfEnabled(createCredentialsProvider, repository.url)
-            }
-            val builder: HttpClientBuilder = HttpClients.custom()
-                .setDefaultRequestConfig(requestConfigBuilder.build())
-                .setSSLContext(CertificateManager.getInstance().sslContext)
-                .setDefaultCredentialsProvider(createCredentialsProvider)
-                .addInterceptorFirst(PreemptiveBasicAuthInterceptor())
-                .addInterceptorLast { request: HttpRequest, _: HttpContext ->
-                    request.setHeader("Accept", "application/json")
-                    request.setHeader("User-Agent", "YouTrack IDE Plugin")
-                }
-            return builder.build()
-        }
+        get() = ApplicationManager.getApplication().getService(HttpClientRegistry::class.java)[repository]
 
     fun HttpUriRequest.execute(): Unit = execute { }
 
     fun <T> HttpUriRequest.execute(handleErrorStatusCode: Boolean = true, responseParser: (json: JsonElement) -> T): T {
+        return executeForReader(handleErrorStatusCode) { responseParser.invoke(JsonParser.parseReader(it)) }
+    }
+
+    /**
+     * Hands response json over to the parser as a stream without building a json tree for the whole response.
+     * Handy for large collections, where every element can be turned into a model object and dropped right away.
+     */
+    fun <T> HttpUriRequest.executeStreaming(handleErrorStatusCode: Boolean = true, responseParser: (reader: JsonReader) -> T): T {
+        return executeForReader(handleErrorStatusCode) { responseParser.invoke(JsonReader(it)) }
+    }
+
+    private fun <T> HttpUriRequest.executeForReader(handleErrorStatusCode: Boolean, responseParser: (reader: Reader) -> T): T {
         val response = httpClient.execute(this)
         try {
             if (response.statusLine.statusCode == 200) {
-                val streamReader = response.responseBodyAsReader
-                return responseParser.invoke(JsonParser.parseReader(streamReader))
+                return responseParser.invoke(response.responseBodyAsReader)
             } else {
                 if (handleErrorStatusCode)
                     RequestErrorsHandler(repository).handleErrorStatusCode(response.statusLine.statusCode)
@@ -104,23 +75,6 @@ interface RestClientTrait : ResponseLoggerTrait {
     private val String.b64Encoded: String
         get() = Base64.getEncoder().encodeToString(this.toByteArray(StandardCharsets.UTF_8))
 
-    private class PreemptiveBasicAuthInterceptor : HttpRequestInterceptor {
-        override fun process(request: HttpRequest, context: HttpContext) {
-            val provider = context.getAttribute(HttpClientContext.CREDS_PROVIDER) as CredentialsProvider
-            val credentials = provider.getCredentials(AuthScope(ANY_HOST, ANY_PORT, ANY_REALM, AuthSchemes.BASIC))
-            if (credentials != null) {
-                request.addHeader(BasicScheme(StandardCharsets.UTF_8).authenticate(credentials, request, context))
-            }
-            val proxyHost = (context.getAttribute(HttpClientContext.HTTP_ROUTE) as HttpRoute).proxyHost
-            if (proxyHost != null) {
-                val proxyCredentials = provider.getCredentials(AuthScope(proxyHost))
-                if (proxyCredentials != null) {
-                    request.addHeader(BasicScheme.authenticate(proxyCredentials, CharsetToolkit.UTF8, true))
-                }
-            }
-        }
-    }
-
     private class RequestErrorsHandler(val repository: YouTrackServer)  {
         fun handleErrorStatusCode(code: Int) {
             // log out from the youtrack instance, if credentials are outdated or not valid any more
@@ -129,6 +83,8 @@ interface RestClientTrait : ResponseLoggerTrait {
                 val manager = TaskManager.getManager(repository.project) as TaskManagerImpl
                 val filteredRepositories = manager.allRepositories.filter { it.url != repository.url }
                 manager.setRepositories(filteredRepositories)
+                ApplicationManager.getApplication().getService(HttpClientRegistry::class.java).invalidate(repository)
+                ApplicationManager.getApplication().getService(ReferenceDataCache::class.java).invalidate(repository)
 
                 val trackerNote = TrackerNotification()
                 trackerNote.notify("Can't connect to YouTrack server. " +
@@ -0,0 +1,93 @@
+package com.github.jk1.ytplugin.rest
+
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.concurrency.JobScheduler
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import kotlin.math.min
+
+/**
+ * Tracks connection failures per YouTrack server and decides when background refreshes (issues, work items,
+ * notifications) may hit the server again. After a failure the server circuit is open and retries are delayed
+ * with exponential backoff plus jitter. Once the delay has passed the circuit is half-open: the next request
+ * either closes it on success or reopens it with a longer delay.
+ */
+@Service
+class ServerBackoffService : Disposable {
+
+    enum class State { CLOSED, OPEN, HALF_OPEN }
+
+    companion object {
+        private val INITIAL_DELAY = TimeUnit.SECONDS.toMillis(15)
+        private val MAX_DELAY = TimeUnit.MINUTES.toMillis(10)
+        private const val JITTER = 0.2
+    }
+
+    private class Backoff(val failures: Int, val retryAt: Long, val message: String)
+
+    private val servers = ConcurrentHashMap<String, Backoff>()
+    private val pendingRetries = ConcurrentHashMap<String, ScheduledFuture<*>>()
+
+    fun getState(repo: YouTrackServer): State {
+        val backoff = servers[repo.url] ?: return State.CLOSED
+        return if (System.currentTimeMillis() < backoff.retryAt) State.OPEN else State.HALF_OPEN
+    }
+
+    /**
+     * @return true if a background request to the server may be made now
+     */
+    fun isAvailable(repo: YouTrackServer) = getState(repo) != State.OPEN
+
+    /**
+     * @return human-readable description of the last connection failure or null if the server is reachable
+     */
+    fun getStatusMessage(repo: YouTrackServer): String? {
+        val backoff = servers[repo.url] ?: return null
+        val seconds = TimeUnit.MILLISECONDS.toSeconds(backoff.retryAt - System.currentTimeMillis())
+        return if (seconds > 0) "${backoff.message} Retrying in $seconds s" else backoff.message
+    }
+
+    fun onSuccess(repo: YouTrackServer) {
+        if (servers.remove(repo.url) != null) {
+            logger.debug("Connection to YouTrack server ${repo.url} has been restored")
+        }
+    }
+
+    /**
+     * Opens the server circuit and optionally schedules a retry once the backoff delay is over.
+     * Retries are keyed by the request kind, so a new failure replaces the retry scheduled before.
+     */
+    fun onFailure(repo: YouTrackServer, message: String, retryKind: String? = null, retry: (() -> Unit)? = null) {
+        val backoff = servers.compute(repo.url) { _, previous ->
+            val failures = (previous?.failures ?: 0) + 1
+            Backoff(failures, System.currentTimeMillis() + delayFor(failures), message)
+        }!!
+        logger.debug("YouTrack server ${repo.url} failed ${backoff.failures} time(s) in a row, " +
+                "backing off until ${backoff.retryAt}")
+        if (retryKind != null && retry != null) {
+            val key = "${repo.url} $retryKind"
+            val delay = backoff.retryAt - System.currentTimeMillis()
+            val future = JobScheduler.getScheduler().schedule({
+                pendingRetries.remove(key)
+                retry.invoke()
+            }, delay, TimeUnit.MILLISECONDS)
+            pendingRetries.put(key, future)?.cancel(false)
+        }
+    }
+
+    private fun delayFor(failures: Int): Long {
+        val exponential = min(MAX_DELAY, INITIAL_DELAY shl min(failures - 1, 16))
+        val jitter = ThreadLocalRandom.current().nextDouble(1 - JITTER, 1 + JITTER)
+        return (exponential * jitter).toLong()
+    }
+
+    override fun dispose() {
+        pendingRetries.values.forEach { it.cancel(false) }
+        pendingRetries.clear()
+    }
+}
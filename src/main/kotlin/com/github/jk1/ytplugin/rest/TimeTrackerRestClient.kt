@@ -5,73 +5,135 @@ import com.github.jk1.ytplugin.rest.MulticatchException.Companion.multicatchExce
 import com.github.jk1.ytplugin.setup.getInstanceVersion
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.github.jk1.ytplugin.timeTracker.TrackerNotification
-import com.google.gson.Gson
+import com.google.gson.JsonArray
+import com.google.gson.JsonObject
 import com.intellij.notification.NotificationType
+import com.intellij.openapi.application.ApplicationManager
 import org.apache.http.HttpResponse
-import org.apache.http.HttpStatus
 import org.apache.http.client.methods.HttpGet
 import org.apache.http.client.methods.HttpPost
 import org.apache.http.client.utils.URIBuilder
 import org.apache.http.conn.HttpHostConnectException
+import org.apache.http.util.EntityUtils
 import java.net.SocketException
 import java.net.SocketTimeoutException
-import java.net.URL
 import java.net.UnknownHostException
+import java.util.concurrent.TimeUnit
+import kotlin.math.abs
 
 
 class TimeTrackerRestClient(override val repository: YouTrackServer) : RestClientTrait, ResponseLoggerTrait {
 
-    private val gson = Gson()
+    companion object {
+        // server might store work item date with a day precision only
+        private val DATE_TOLERANCE = TimeUnit.DAYS.toMillis(1)
+        // local and server clocks may disagree a bit on when the work item was created
+        private val CLOCK_SKEW = TimeUnit.MINUTES.toMillis(10)
+    }
+
+    private val referenceData: ReferenceDataCache
+        get() = ApplicationManager.getApplication().getService(ReferenceDataCache::class.java)
 
     fun postNewWorkItem(
         issueId: String, time: String, type: String, comment: String,
         date: String, attributes: Map<String, String> = mapOf()
     ): Int {
-        val types = getAvailableWorkItemTypes()
-
+        val typeId = getWorkItemTypeId(type)
         val method = HttpPost("${repository.url}/api/issues/${issueId}/timeTracking/workItems")
-        val res: URL? = this::class.java.classLoader.getResource("post_work_item_body.json")
+        method.entity = workItemJson(time, type, typeId, comment, date, attributes).toString().jsonEntity
 
-        val jsonBody = res?.readText()
-            ?.replace("\"{minutes}\"", time, true)
-            ?.replace("\"{date}\"", date, true)
-            ?.replace("{authorId}", getMyIdAsAuthor(), true)
-            ?.replace("{type}", gson.toJson(type).trim('\"'), true)
-            ?.replace(
-                "{typeId}",
-                types[type] ?: throw IllegalArgumentException("No work item type by name '$type'"),
-                true
-            )
-            ?.replace("{comment}", gson.toJson(comment).trim('\"'), true)
-            ?.replace("\"{attributes}\"", constructAttributesJson(attributes))
-        method.entity = jsonBody?.jsonEntity
+        // transport errors are thrown as is, callers retry them unlike the client errors in the response status
+        val response: HttpResponse = httpClient.execute(method)
+        // release pooled connection back to the manager
+        EntityUtils.consume(response.entity)
+        return response.statusLine.statusCode
+    }
 
+    /**
+     * Looks for a work item with the given duration, type, comment and date posted by the current user.
+     * Work items created on the server before [postedAfter] are not taken into account, so that an earlier
+     * work item with the same details is not mistaken for the one being looked for.
+     *
+     * @param postedAfter local time of the post attempt, 0 if unknown
+     * @return null if it can't be checked at the moment
+     */
+    fun hasWorkItem(issueId: String, time: String, type: String, comment: String, date: String,
+                    postedAfter: Long): Boolean? {
+        val builder = URIBuilder("${repository.url}/api/issues/$issueId/timeTracking/workItems")
+        builder.setParameter("\$top", "-1")
+                .setParameter("fields", "text,date,created,duration(minutes),author(id),type(name)")
         return try {
-            val response: HttpResponse = httpClient.execute(method)
-            response.statusLine.statusCode
-        } catch (e: RuntimeException) {
-            logger.debug(e)
-            HttpStatus.SC_BAD_REQUEST
+            val authorId = getMyIdAsAuthor()
+            if (authorId.isEmpty()) {
+                return null
+            }
+            HttpGet(builder.build()).execute { element ->
+                element.asJsonArray.map { it.asJsonObject }.any { item ->
+                    val text = item.get("text")?.takeUnless { it.isJsonNull }?.asString ?: ""
+                    val itemType = item.get("type")?.takeUnless { it.isJsonNull }?.asJsonObject?.get("name")?.asString
+                    abs(item.get("date").asLong - (date.toLongOrNull() ?: 0)) < DATE_TOLERANCE &&
+                            item.get("created").asLong > postedAfter - CLOCK_SKEW &&
+                            item.getAsJsonObject("duration").get("minutes").asString == time &&
+                            item.getAsJsonObject("author").get("id").asString == authorId &&
+                            (itemType ?: "") == type &&
+                            text == comment
+                }
+            }
         } catch (e: Exception) {
             logger.debug(e)
-            HttpStatus.SC_BAD_REQUEST
+            null
         }
     }
 
-    private fun constructAttributesJson(attributes: Map<String, String>): String {
-        var attributesString = ""
-        attributes.forEach {
-            val res: URL? = this::class.java.classLoader.getResource("work_item_attribute_template.json")
-            attributesString += "\n${
-                (res?.readText()
-                    ?.replace("{attributeName}", gson.toJson(it.key).trim('\"'), true)
-                    ?.replace("{attributeValueName}", gson.toJson(it.value).trim('\"'), true))
-            },"
-        }
-        return attributesString.removeSuffix(",")
+    private fun getWorkItemTypeId(type: String): String {
+        getAvailableWorkItemTypes()[type]?.let { return it }
+        // work item type might have been created after the types were cached
+        referenceData.invalidate(repository, ReferenceDataCache.WORK_ITEM_TYPES)
+        val types = getAvailableWorkItemTypes()
+        // empty list means types failed to load, that's no reason to consider the work item malformed
+        check(types.isNotEmpty()) { "Work item types are not available" }
+        return types[type] ?: throw IllegalArgumentException("No work item type by name '$type'")
+    }
+
+    private fun workItemJson(time: String, type: String, typeId: String, comment: String, date: String,
+                             attributes: Map<String, String>): JsonObject {
+        val item = JsonObject()
+        item.addProperty("usesMarkdown", true)
+        item.addProperty("text", comment)
+        item.addProperty("date", date.toLongOrNull() ?: throw IllegalArgumentException("Malformed work item date '$date'"))
+        val authorId = getMyIdAsAuthor()
+        check(authorId.isNotEmpty()) { "Current user id is not available" }
+        item.add("author", JsonObject().apply { addProperty("id", authorId) })
+        item.add("duration", JsonObject().apply {
+            addProperty("minutes", time.toLongOrNull() ?: throw IllegalArgumentException("Malformed work item duration '$time'"))
+        })
+        item.add("type", JsonObject().apply {
+            addProperty("name", type)
+            addProperty("id", typeId)
+            addProperty("\$type", "WorkItemType")
+        })
+        item.add("attributes", JsonArray().apply {
+            attributes.forEach { (name, value) ->
+                add(JsonObject().apply {
+                    addProperty("name", name)
+                    add("value", JsonObject().apply {
+                        addProperty("name", value)
+                        addProperty("\$type", "WorkItemAttributeValue")
+                    })
+                })
+            }
+        })
+        item.addProperty("\$type", "IssueWorkItem")
+        return item
     }
 
     private fun getMyIdAsAuthor(): String {
+        return referenceData.getOrLoad(repository, ReferenceDataCache.CURRENT_USER_ID, { it.isNotEmpty() }) {
+            loadMyId()
+        }
+    }
+
+    private fun loadMyId(): String {
         return try {
             val version = getInstanceVersion()
             //backward compatibility
@@ -91,6 +153,12 @@ class TimeTrackerRestClient(override val repository: YouTrackServer) : RestClien
     }
 
     fun getAvailableWorkItemTypes(): Map<String, String> {
+        return referenceData.getOrLoad(repository, ReferenceDataCache.WORK_ITEM_TYPES, { it.isNotEmpty() }) {
+            loadWorkItemTypes()
+        }
+    }
+
+    private fun loadWorkItemTypes(): Map<String, String> {
         val builder = URIBuilder("${repository.url}/api/admin/timeTrackingSettings/workItemTypes")
         builder.addParameter("fields", "name,id")
         val method = HttpGet(builder.build())
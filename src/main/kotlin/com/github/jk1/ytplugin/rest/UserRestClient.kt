@@ -16,9 +16,7 @@ class UserRestClient(override val repository: YouTrackServer) : RestClientTrait
                 .addParameter("sort", "descending")
 
         val method = HttpGet(builder.build())
-        val items = method.execute { element ->
-            element.asJsonArray.mapNotNull { IssueJsonParser.parseWorkItem(it) }
-        }
+        val items = method.executeStreaming { IssueJsonParser.parseWorkItems(it) }
         return items.sortedWith(compareByDescending { it.date })
     }
 
@@ -13,7 +13,9 @@ import com.intellij.tasks.youtrack.YouTrackRepository
  */
 class YouTrackServer(private val delegate: YouTrackRepository, val project: Project) {
 
-    val id: String get() = "${project.name} $username@$url"
+    val id: String get() = "${project.name} $accountId"
+    // projects connected to the same server with the same credentials share issue and work item stores
+    val accountId: String get() = "$username@$url"
     val url: String get() = delegate.url
     val username: String get() = delegate.username
     val password: String get() = delegate.password
@@ -4,9 +4,7 @@ import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.tasks.NoActiveYouTrackTaskException
 import com.github.jk1.ytplugin.timeTracker.actions.StartTrackerAction
-import com.github.jk1.ytplugin.timeTracker.actions.StopTrackerAction
 import com.intellij.ide.IdeEventQueue
-import com.intellij.ide.util.PropertiesComponent
 import com.intellij.notification.NotificationType
 import com.intellij.openapi.Disposable
 import com.intellij.openapi.editor.Editor
@@ -19,10 +17,7 @@ import java.awt.AWTEvent
 import java.awt.Component
 import java.awt.event.KeyEvent
 import java.awt.event.MouseEvent
-import java.awt.event.MouseWheelEvent
 import java.lang.System.currentTimeMillis
-import java.text.SimpleDateFormat
-import java.time.LocalDateTime
 import java.util.concurrent.atomic.AtomicBoolean
 import javax.swing.JFrame
 
@@ -45,11 +40,28 @@ class ActivityTracker(
         }
         trackingDisposable = newDisposable(parentDisposable)
         startIDEListener(trackingDisposable!!)
-        scheduleListener(trackingDisposable!!)
+        val scheduledPosting = ScheduledPosting(timer, project)
+        Disposer.register(trackingDisposable!!, scheduledPosting)
+        scheduledPosting.start()
     }
 
 
     companion object {
+        private const val MOUSE_MOVE_EVENTS_THRESHOLD_MS = 1000
+
+        internal const val OTHER_EVENT = 0
+        internal const val INPUT_EVENT = 1
+        internal const val POINTER_MOVE_EVENT = 2
+
+        /**
+         * Classifies IDE events by id only, as it is called for every event in the queue
+         */
+        internal fun eventKind(id: Int) = when (id) {
+            MouseEvent.MOUSE_CLICKED, KeyEvent.KEY_PRESSED -> INPUT_EVENT
+            MouseEvent.MOUSE_MOVED, MouseEvent.MOUSE_WHEEL -> POINTER_MOVE_EVENT
+            else -> OTHER_EVENT
+        }
+
         fun newDisposable(vararg parents: Disposable, callback: () -> Any = {}): Disposable {
             val isDisposed = AtomicBoolean(false)
             val disposable = Disposable {
@@ -74,75 +86,37 @@ class ActivityTracker(
         }
     }
 
-    private fun scheduleListener(parentDisposable: Disposable) {
-        IdeEventQueue.getInstance().addPostprocessor(IdeEventQueue.EventDispatcher {
-
-            val currentTime = LocalDateTime.now()
-            val formatter = SimpleDateFormat("mm")
-            val hour = formatter.format(SimpleDateFormat("mm").parse(currentTime.hour.toString()))
-            val minute = formatter.format(SimpleDateFormat("mm").parse(currentTime.minute.toString()))
-            val time = hour + ":" + minute + ":" + currentTime.second.toString()
-
-            if (timer.isScheduledEnabled && time == timer.scheduledPeriod) {
-                if (!timer.isPostedScheduled) {
-                    val trackerNote = TrackerNotification()
-                    trackerNote.notify("Scheduled time posting at ${time}0", NotificationType.INFORMATION)
-                    timer.isPostedScheduled = true
-                    StopTrackerAction().stopTimer(project, ComponentAware.of(project).taskManagerComponent.getActiveYouTrackRepository())
-                }
-            } else {
-                timer.isPostedScheduled = false
-            }
-            logger.trace("scheduleListener: stop the propagation of an event to other listeners")
-            false
-        }, parentDisposable)
-    }
-
+    /**
+     * Runs for every event in the IDE event queue, so only a cheap event id check is made for most of them
+     */
     private fun startIDEListener(parentDisposable: Disposable) {
         var lastMouseMoveTimestamp = 0L
-        val mouseMoveEventsThresholdMs = 1000
         IdeEventQueue.getInstance().addPostprocessor(IdeEventQueue.EventDispatcher { awtEvent: AWTEvent ->
 
-            val store: PropertiesComponent = PropertiesComponent.getInstance(project)
             isPostedOnClose = false
             if (timer.isPaused) {
                 timer.pausedTime = currentTimeMillis() - timer.startTime - timer.timeInMills
+                timer.markDirty()
             }
-            // instant caching
-            store.saveFields(timer)
 
-            var isMouseOrKeyboardActive = false
-            if (awtEvent is MouseEvent && awtEvent.id == MouseEvent.MOUSE_CLICKED) {
-                isMouseOrKeyboardActive = captureIdeState()
-                logger.trace("state MOUSE_CLICKED $isMouseOrKeyboardActive")
-            }
-            if (awtEvent is MouseEvent && awtEvent.id == MouseEvent.MOUSE_MOVED) {
-                val now = currentTimeMillis()
-                if (now - lastMouseMoveTimestamp > mouseMoveEventsThresholdMs) {
-                    isMouseOrKeyboardActive = captureIdeState()
-                    lastMouseMoveTimestamp = now
-                    logger.trace("state MOUSE_MOVED$isMouseOrKeyboardActive")
-                }
-            }
-            if (awtEvent is MouseWheelEvent && awtEvent.id == MouseEvent.MOUSE_WHEEL) {
-                val now = currentTimeMillis()
-                if (now - lastMouseMoveTimestamp > mouseMoveEventsThresholdMs) {
-                    isMouseOrKeyboardActive = captureIdeState()
-                    lastMouseMoveTimestamp = now
-                    logger.trace("state MOUSE_WHEEL $isMouseOrKeyboardActive")
+            val isMouseOrKeyboardActive = when (eventKind(awtEvent.id)) {
+                INPUT_EVENT -> captureIdeState()
+                POINTER_MOVE_EVENT -> {
+                    val now = currentTimeMillis()
+                    if (now - lastMouseMoveTimestamp > MOUSE_MOVE_EVENTS_THRESHOLD_MS) {
+                        lastMouseMoveTimestamp = now
+                        captureIdeState()
+                    } else {
+                        false
+                    }
                 }
-            }
-            if (awtEvent is KeyEvent && awtEvent.id == KeyEvent.KEY_PRESSED) {
-                isMouseOrKeyboardActive = captureIdeState()
-                logger.trace("state KEYBOARD $isMouseOrKeyboardActive")
+                else -> false
             }
 
             if (!isMouseOrKeyboardActive) {
                 if (currentTimeMillis() - startInactivityTime > timer.inactivityPeriodInMills && timer.isRunning &&
                     !timer.isPaused && timer.isAutoTrackingEnabled) {
 
-                    logger.trace("timer.inactivityPeriodInMills: ${timer.inactivityPeriodInMills} pausedTime: ${timer.pausedTime}")
-
                     timer.pausedTime += (currentTimeMillis() - startInactivityTime - timer.inactivityPeriodInMills)
 
                     logger.trace("In activity tracker, !isMouseOrKeyboardActive: ${timer.pausedTime}, " +
@@ -164,7 +138,6 @@ class ActivityTracker(
                     logger.debug("Active task is not valid")
                 }
             }
-            logger.trace("startIDEListener: stop the propagation of an event to other listeners")
             false
         }, parentDisposable)
     }
@@ -6,19 +6,31 @@ import com.github.jk1.ytplugin.issues.model.IssueWorkItem
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.rest.UserRestClient
 import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.progress.ProgressIndicator
 import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.ActionCallback
 import java.net.SocketTimeoutException
+import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * Work items of a YouTrack server account. The store is shared by all the open projects configured with
+ * the same account, every project looks at it through its own [View] with a search filter and sort order.
+ */
 class IssueWorkItemStore(@Volatile private var workItems: List<IssueWorkItem> = listOf()) : Iterable<IssueWorkItem> {
 
     private var currentCallback: ActionCallback = ActionCallback.Done()
-    var withGroupingByIssue = false
-    var searchQuery = ""
-
-    fun update(repo: YouTrackServer): ActionCallback {
-        if (!isUpdating()) {
+    @Volatile
+    private var lastUpdated = 0L
+    private val subscribers: MutableSet<Project> = ConcurrentHashMap.newKeySet()
+
+    /**
+     * @param ifOlderThan skips the refresh if the store has been refreshed that many ms ago or later,
+     * e.g. by another project sharing the store
+     */
+    fun update(repo: YouTrackServer, ifOlderThan: Long = 0): ActionCallback {
+        if (!isUpdating() && System.currentTimeMillis() - lastUpdated >= ifOlderThan) {
             logger.debug("Issue work item store refresh scheduled for project ${repo.project.name} and YouTrack server ${repo.url}")
             currentCallback = ActionCallback()
             RefreshIssuesWorkItemsTask(currentCallback, repo).queue()
@@ -26,24 +38,87 @@ class IssueWorkItemStore(@Volatile private var workItems: List<IssueWorkItem> =
         return currentCallback
     }
 
-    fun filter(repo: YouTrackServer, search: String): ActionCallback {
-        if (!isUpdating()) {
+    fun isUpdating() = !currentCallback.isDone
+
+    fun getAllWorkItems() = workItems
+
+    override fun iterator() = workItems.iterator()
+
+    /**
+     * @return true if the project has not been subscribed before
+     */
+    fun subscribe(project: Project) = subscribers.add(project)
+
+    /**
+     * @return true if no projects are subscribed to the store anymore
+     */
+    fun unsubscribe(project: Project): Boolean {
+        subscribers.remove(project)
+        return subscribers.isEmpty()
+    }
+
+    /**
+     * Project-specific look at the shared work items. Filtered and sorted list is computed lazily
+     * and cached until the store contents or the view settings change.
+     */
+    inner class View : Iterable<IssueWorkItem> {
+
+        @Volatile
+        var withGroupingByIssue = false
+        @Volatile
+        var searchQuery = ""
+
+        private class Projection(val source: List<IssueWorkItem>, val searchQuery: String,
+                                       val withGroupingByIssue: Boolean, val workItems: List<IssueWorkItem>)
+
+        @Volatile
+        private var projection: Projection? = null
+
+        fun update(repo: YouTrackServer, ifOlderThan: Long = 0) = this@IssueWorkItemStore.update(repo, ifOlderThan)
+
+        /**
+         * Filtering is local, only the project this view belongs to is notified
+         */
+        fun filter(repo: YouTrackServer, search: String): ActionCallback {
             logger.debug("Issue work items filtering")
-            currentCallback = ActionCallback()
             searchQuery = search
-            RefreshIssuesWorkItemsTask(currentCallback, repo).queue()
+            ComponentAware.of(repo.project).issueWorkItemsUpdaterComponent.onAfterUpdate()
+            return ActionCallback.Done()
         }
-        return currentCallback
-    }
 
+        fun isUpdating() = this@IssueWorkItemStore.isUpdating()
 
-    fun isUpdating() = !currentCallback.isDone
+        fun getAllWorkItems(): List<IssueWorkItem> {
+            val source = workItems
+            val current = projection
+            if (current != null && current.source === source && current.searchQuery == searchQuery &&
+                    current.withGroupingByIssue == withGroupingByIssue) {
+                return current.workItems
+            }
+            val query = searchQuery
+            val grouping = withGroupingByIssue
+            val filtered = if (query != "") filterWorkItems(query, source) else source
+            val sorted = if (grouping) filtered.sortedWith(compareBy { it.issueId }) else filtered
+            projection = Projection(source, query, grouping, sorted)
+            return sorted
+        }
 
-    fun getAllWorkItems() = workItems
+        fun getWorkItem(index: Int) = getAllWorkItems()[index]
 
-    fun getWorkItem(index: Int) = workItems[index]
+        override fun iterator() = getAllWorkItems().iterator()
+    }
 
-    override fun iterator() = workItems.iterator()
+    @OptIn(ExperimentalStdlibApi::class)
+    private fun filterWorkItems(searchQuery: String, list: List<IssueWorkItem>): List<IssueWorkItem> {
+        return list.filter {
+            it.value.lowercase().contains(searchQuery.lowercase()) ||
+            it.date.format().lowercase().contains(searchQuery.lowercase()) ||
+            it.author.lowercase().contains(searchQuery.lowercase()) ||
+            it.issueId.lowercase().contains(searchQuery.lowercase()) ||
+            it.type.lowercase().contains(searchQuery.lowercase()) ||
+            it.comment?.lowercase()?.contains(searchQuery.lowercase()) ?: false
+        }
+    }
 
     inner class RefreshIssuesWorkItemsTask(private val future: ActionCallback, private val repo: YouTrackServer) :
             Task.Backgroundable(repo.project, "Updating work items from server", true, ALWAYS_BACKGROUND) {
@@ -51,39 +126,23 @@ class IssueWorkItemStore(@Volatile private var workItems: List<IssueWorkItem> =
         override fun run(indicator: ProgressIndicator) {
             try {
                 logger.debug("Fetching issuesWorkItems for the search query")
-                val list = UserRestClient(repo).getWorkItemsForUser()
-                workItems = if (searchQuery != "")
-                    filterWorkItems(searchQuery, list)
-                else
-                    list
-                workItems = if (withGroupingByIssue)
-                    workItems.sortedWith(compareBy { it.issueId })
-                else workItems
-
+                workItems = UserRestClient(repo).getWorkItemsForUser()
+                lastUpdated = System.currentTimeMillis()
+                ComponentAware.of(repo.project).serverBackoffComponent.onSuccess(repo)
             } catch (e: SocketTimeoutException) {
-                displayErrorMessage("Failed to updated issueWorkItems from YouTrack server. Request timed out.", e)
+                onError("Failed to updated issueWorkItems from YouTrack server. Request timed out.", e)
             } catch (e: Exception) {
-                displayErrorMessage("Can't connect to YouTrack server. Are you offline?", e)
-            }
-        }
-
-        @OptIn(ExperimentalStdlibApi::class)
-        private fun filterWorkItems(searchQuery: String, list: List<IssueWorkItem>): List<IssueWorkItem> {
-            return list.filter {
-                it.value.lowercase().contains(searchQuery.lowercase()) ||
-                it.date.format().lowercase().contains(searchQuery.lowercase()) ||
-                it.author.lowercase().contains(searchQuery.lowercase()) ||
-                it.issueId.lowercase().contains(searchQuery.lowercase()) ||
-                it.type.lowercase().contains(searchQuery.lowercase()) ||
-                it.comment?.lowercase()?.contains(searchQuery.lowercase()) ?: false
+                onError("Can't connect to YouTrack server. Are you offline?", e)
             }
         }
 
-        private fun displayErrorMessage(message: String, exception: Exception) {
+        private fun onError(message: String, exception: Exception) {
             logger.info("YouTrack issueWorkItems refresh failed: ${exception.message}")
             logger.debug(exception)
             title = " $message"
-            Thread.sleep(15000) // display error message for a while
+            ComponentAware.of(repo.project).serverBackoffComponent.onFailure(repo, message, "workItems") {
+                ApplicationManager.getApplication().invokeLater({ update(repo) }, repo.project.disposed)
+            }
         }
 
         override fun onCancel() {
@@ -94,7 +153,9 @@ class IssueWorkItemStore(@Volatile private var workItems: List<IssueWorkItem> =
         override fun onSuccess() {
             future.setDone()
             logger.debug("IssueWorkItems store has been updated for YouTrack server ${repo.url}")
-            ComponentAware.of(repo.project).issueWorkItemsUpdaterComponent.onAfterUpdate()
+            (subscribers + repo.project).filterNot { it.isDisposed }.forEach {
+                ComponentAware.of(it).issueWorkItemsUpdaterComponent.onAfterUpdate()
+            }
         }
     }
 }
\ No newline at end of file
@@ -2,19 +2,19 @@ package com.github.jk1.ytplugin.timeTracker
 
 import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.rest.RefreshScheduler
+import com.github.jk1.ytplugin.rest.RefreshScheduler.Companion.toolWindowVisibility
+import com.github.jk1.ytplugin.rest.RefreshScheduler.Companion.updateOnEdt
 import com.github.jk1.ytplugin.rest.TimeTrackerRestClient
 import com.github.jk1.ytplugin.tasks.NoYouTrackRepositoryException
 import com.github.jk1.ytplugin.tasks.YouTrackServer
-import com.intellij.concurrency.JobScheduler
-import com.intellij.ide.util.PropertiesComponent
 import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.project.Project
 import com.intellij.serviceContainer.AlreadyDisposedException
 import java.util.*
-import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
-import javax.swing.SwingUtilities
 
 /**
  * Manages timed issueWorkItems store updates for active projects
@@ -25,16 +25,15 @@ import javax.swing.SwingUtilities
 class IssueWorkItemsStoreUpdaterService(override val project: Project) : Disposable, ComponentAware {
 
     //  todo: customizable update interval
-    private val timedRefreshTask: ScheduledFuture<*> =
-            JobScheduler.getScheduler().scheduleWithFixedDelay({
-                SwingUtilities.invokeLater {
-                    if (!project.isDisposed) {
-                        taskManagerComponent.getAllConfiguredYouTrackRepositories().forEach {
-                            issueWorkItemsStoreComponent[it].update(it)
-                        }
-                    }
-                }
-            }, 5, 5, TimeUnit.MINUTES)
+    init {
+        refreshSchedulerComponent.register(RefreshScheduler.WORK_ITEMS, 5, TimeUnit.MINUTES, this,
+                servers = { taskManagerComponent.getAllConfiguredYouTrackRepositories() },
+                isVisible = toolWindowVisibility(project, this)) { repo ->
+            replayPendingWorkItems(repo)
+            // the store might have been just refreshed for another project sharing it
+            updateOnEdt(project) { issueWorkItemsStoreComponent[repo].update(repo, TimeUnit.MINUTES.toMillis(1)) }
+        }
+    }
 
     private val listeners: MutableSet<() -> Unit> = mutableSetOf()
 
@@ -54,7 +53,6 @@ class IssueWorkItemsStoreUpdaterService(override val project: Project) : Disposa
             logger.debug("Container is already disposed")
             logger.debug(e)
         }
-        timedRefreshTask.cancel(true)
     }
 
     private fun postOnProjectClose(timer: TimeTracker, repo: YouTrackServer) {
@@ -67,8 +65,6 @@ class IssueWorkItemsStoreUpdaterService(override val project: Project) : Disposa
                 // post not only last recorded item, but all saved items as well
                 connector.postSavedWorkItemsToServer(spentTimePerTaskStorage.getAllStoredItems())
             }
-            val propertiesStore: PropertiesComponent = PropertiesComponent.getInstance(project)
-            propertiesStore.setValue("spentTimePerTaskStorage.store", timer.spentTimePerTaskStorage.getAllStoredItems().toString())
 
             logger.debug("time tracker stopped on PROJECT_CLOSE with time ${timer.recordedTime}")
         } catch (e: IllegalStateException) {
@@ -76,6 +72,17 @@ class IssueWorkItemsStoreUpdaterService(override val project: Project) : Disposa
         }
     }
 
+    /**
+     * Work items that failed to post before are retried in background once the server is reachable
+     */
+    private fun replayPendingWorkItems(repo: YouTrackServer) {
+        if (project.getService(WorkItemJournal::class.java).getPending(repo.url).isNotEmpty()) {
+            ApplicationManager.getApplication().executeOnPooledThread {
+                WorkItemOutbox(repo, project).replay(quiet = true)
+            }
+        }
+    }
+
     fun subscribe(listener: () -> Unit) {
         listeners.add(listener)
     }
@@ -1,18 +1,26 @@
 package com.github.jk1.ytplugin.timeTracker
 
+import com.github.jk1.ytplugin.ComponentAware
+import com.github.jk1.ytplugin.issues.model.IssueWorkItem
 import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.rest.IssueJsonParser
 import com.github.jk1.ytplugin.tasks.YouTrackServer
 import com.google.gson.JsonParser
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.PersistentStateComponent
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.components.State
 import com.intellij.openapi.components.Storage
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
 import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Application-scoped persistent issue work items data cache. Issue work items data is persisted in a home folder instead of
  * a project directory.
+ *
+ * Stores are keyed by server account and shared by all the projects using it, each project gets its own view
+ * of the store. A store no project is subscribed to anymore is dropped from memory and is only kept persisted.
  */
 @Service
 @State(name = "YouTrack IssuesWorkItems", storages = [(Storage(value = "issuesWorkItems.xml"))])
@@ -20,17 +28,36 @@ class PersistentIssueWorkItemsStore : PersistentStateComponent<PersistentIssueWo
 
     private var loadedMemento: Memento = Memento()
     private val stores = ConcurrentHashMap<String, IssueWorkItemStore>()
+    private val views = ConcurrentHashMap<String, IssueWorkItemStore.View>()
+    // work items of the dropped stores
+    private val idleWorkItems = ConcurrentHashMap<String, List<IssueWorkItem>>()
 
-    override fun getState(): Memento = Memento(stores)
+    override fun getState(): Memento = Memento(idleWorkItems + stores.mapValues { it.value.getAllWorkItems() })
 
     override fun loadState(state: Memento) {
         loadedMemento = state
     }
 
-    operator fun get(repo: YouTrackServer): IssueWorkItemStore {
-        return stores.getOrPut(repo.id) {
-            logger.debug("IssueWorkItems store opened for YouTrack server ${repo.url}")
-            loadedMemento.getStore(repo)
+    operator fun get(repo: YouTrackServer): IssueWorkItemStore.View {
+        return views.getOrPut(repo.id) {
+            val key = repo.accountId
+            val store = stores.getOrPut(key) {
+                logger.debug("IssueWorkItems store opened for YouTrack server ${repo.url}")
+                idleWorkItems.remove(key)?.let { IssueWorkItemStore(it) } ?: loadedMemento.getStore(repo)
+            }
+            if (store.subscribe(repo.project)) {
+                Disposer.register(ComponentAware.of(repo.project).projectDisposable,
+                        Disposable { release(repo.id, key, store, repo.project) })
+            }
+            store.View()
+        }
+    }
+
+    private fun release(viewKey: String, key: String, store: IssueWorkItemStore, project: Project) {
+        views.remove(viewKey)
+        if (store.unsubscribe(project) && stores.remove(key, store)) {
+            logger.debug("IssueWorkItems store $key closed, no projects use it anymore")
+            idleWorkItems[key] = store.getAllWorkItems()
         }
     }
 
@@ -39,13 +66,15 @@ class PersistentIssueWorkItemsStore : PersistentStateComponent<PersistentIssueWo
         var persistentIssueWorkItems: Map<String, String> = mutableMapOf()
 
         // primary constructor is reserved for serializer
-        constructor(stores: Map<String, IssueWorkItemStore>) : this() {
+        constructor(stores: Map<String, List<IssueWorkItem>>) : this() {
             persistentIssueWorkItems = stores.mapValues { "[${it.value.joinToString(", ") { it.json }}]" }
         }
 
         fun getStore(repo: YouTrackServer): IssueWorkItemStore {
             try {
-                val issuesWorkItemsJson = persistentIssueWorkItems[repo.id] ?: return IssueWorkItemStore()
+                // stores used to be kept per project before
+                val issuesWorkItemsJson = persistentIssueWorkItems[repo.accountId] ?: persistentIssueWorkItems[repo.id]
+                        ?: return IssueWorkItemStore()
                 val issuesWorkItems = JsonParser.parseString(issuesWorkItemsJson).asJsonArray
                         .mapNotNull { IssueJsonParser.parseWorkItem(it) }
 
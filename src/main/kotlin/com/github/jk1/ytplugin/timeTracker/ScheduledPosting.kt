@@ -0,0 +1,88 @@
+package com.github.jk1.ytplugin.timeTracker
+
+import com.github.jk1.ytplugin.ComponentAware
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.tasks.NoYouTrackRepositoryException
+import com.github.jk1.ytplugin.timeTracker.actions.StopTrackerAction
+import com.intellij.concurrency.JobScheduler
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.project.Project
+import java.time.Duration
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Posts tracked time daily at [TimeTracker.scheduledPeriod]. Scheduler delays don't account for the time
+ * a machine spends asleep, so the wall clock is re-checked at least once a minute. A posting missed while
+ * the machine was asleep is made right after wake-up, several missed days result in a single posting.
+ */
+class ScheduledPosting(private val timer: TimeTracker, override val project: Project) : Disposable, ComponentAware {
+
+    companion object {
+        private val MAX_CHECK_INTERVAL = TimeUnit.MINUTES.toMillis(1)
+        private val TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm")
+
+        /**
+         * @param scheduledPeriod daily posting time in "HH:mm:s" format
+         * @return the first posting time strictly after the given moment
+         */
+        fun nextPostingTime(scheduledPeriod: String, after: LocalDateTime): LocalDateTime {
+            val (hours, minutes, seconds) = scheduledPeriod.split(":").map { it.trim().toIntOrNull() ?: 0 } + listOf(0, 0, 0)
+            val sameDay = after.withHour(hours.coerceIn(0, 23)).withMinute(minutes.coerceIn(0, 59))
+                    .withSecond(seconds.coerceIn(0, 59)).withNano(0)
+            return if (sameDay.isAfter(after)) sameDay else sameDay.plusDays(1)
+        }
+    }
+
+    @Volatile
+    private var lastCheck: LocalDateTime = LocalDateTime.now()
+    @Volatile
+    private var pendingCheck: ScheduledFuture<*>? = null
+    @Volatile
+    private var isDisposed = false
+
+    fun start() {
+        scheduleCheck()
+    }
+
+    override fun dispose() {
+        isDisposed = true
+        pendingCheck?.cancel(false)
+    }
+
+    private fun scheduleCheck() {
+        if (!isDisposed) {
+            val untilPosting = Duration.between(LocalDateTime.now(), nextPostingTime(timer.scheduledPeriod, lastCheck)).toMillis()
+            pendingCheck = JobScheduler.getScheduler().schedule({ check() },
+                    untilPosting.coerceIn(0, MAX_CHECK_INTERVAL), TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private fun check() {
+        try {
+            val now = LocalDateTime.now()
+            val postingTime = nextPostingTime(timer.scheduledPeriod, lastCheck)
+            lastCheck = now
+            if (!now.isBefore(postingTime) && timer.isScheduledEnabled && !project.isDisposed) {
+                logger.debug("Scheduled time posting for $postingTime")
+                ApplicationManager.getApplication().invokeLater({ post(postingTime) }, project.disposed)
+            }
+        } finally {
+            scheduleCheck()
+        }
+    }
+
+    private fun post(postingTime: LocalDateTime) {
+        try {
+            val trackerNote = TrackerNotification()
+            trackerNote.notify("Scheduled time posting at ${postingTime.format(TIME_FORMAT)}", NotificationType.INFORMATION)
+            StopTrackerAction().stopTimer(project, taskManagerComponent.getActiveYouTrackRepository())
+        } catch (e: NoYouTrackRepositoryException) {
+            logger.debug("Scheduled time posting skipped: ${e.message}")
+        }
+    }
+}
@@ -2,57 +2,91 @@ package com.github.jk1.ytplugin.timeTracker
 
 import com.github.jk1.ytplugin.ComponentAware
 import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.timeTracker.SpentTimePerTaskStorage.Memento
 import com.intellij.ide.util.PropertiesComponent
 import com.intellij.notification.NotificationType
+import com.intellij.openapi.components.PersistentStateComponent
 import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.State
+import com.intellij.openapi.components.Storage
+import com.intellij.openapi.components.StoragePathMacros
 import com.intellij.openapi.project.Project
-import java.util.concurrent.ConcurrentHashMap
-import java.util.regex.Pattern
-
 
+/**
+ * Time tracked locally per task, that has not been posted to YouTrack yet. Reads go to an immutable
+ * snapshot without locking, as the timer widget asks for the saved time every second. Updates replace
+ * a single entry of the snapshot, the state is persisted by the platform along with the workspace.
+ */
 @Service
-class SpentTimePerTaskStorage(override val project: Project) : ComponentAware {
+@State(name = "YouTrack Spent Time Per Task", storages = [(Storage(StoragePathMacros.WORKSPACE_FILE))])
+class SpentTimePerTaskStorage(override val project: Project) : ComponentAware, PersistentStateComponent<Memento> {
+
+    companion object {
+        // plugin versions before used to keep the map's toString() in a project property
+        private const val LEGACY_PERSISTENT_KEY = "spentTimePerTaskStorage.store"
+
+        /**
+         * Parses "{ISSUE-1=60000, ISSUE-2=120000}". Task id is everything before the last '=',
+         * so ids with '=' inside are kept intact, malformed entries are skipped.
+         */
+        internal fun parseLegacyStore(value: String): Map<String, Long> {
+            return value.trim().removePrefix("{").removeSuffix("}")
+                    .split(", ")
+                    .mapNotNull { entry ->
+                        val separator = entry.lastIndexOf('=')
+                        val time = entry.substring(separator + 1).trim().toLongOrNull()
+                        if (separator > 0 && time != null) entry.substring(0, separator).trim() to time else null
+                    }
+                    .toMap()
+        }
+    }
 
     @Volatile
-    private var store = ConcurrentHashMap<String, Long>()
+    private var snapshot: Map<String, Long> = mapOf()
 
     init {
-        val propertiesStore: PropertiesComponent = PropertiesComponent.getInstance(project)
-        store = convertStringToHashMap(propertiesStore.getValue("spentTimePerTaskStorage.store").toString())
-    }
-
-    private fun convertStringToHashMap(string: String?): ConcurrentHashMap<String, Long> {
-        val loadedMap = ConcurrentHashMap<String, Long>()
-        val pattern: Pattern = Pattern.compile("[\\{\\}\\=\\, ]++")
-        val split: Array<String> = pattern.split(string)
-        var i = 1
-        while (i + 2 <= split.size) {
-            loadedMap[split[i]] = split[i + 1].toLong()
-            i += 2
+        val properties = PropertiesComponent.getInstance(project)
+        val legacyStore = properties.getValue(LEGACY_PERSISTENT_KEY)
+        if (legacyStore != null) {
+            snapshot = parseLegacyStore(legacyStore)
+            properties.unsetValue(LEGACY_PERSISTENT_KEY)
+            logger.debug("Migrated ${snapshot.size} locally saved work items from project properties")
         }
-        return loadedMap
     }
 
-    fun getSavedTimeForLocalTask(task: String) : Long {
-        if (store[task] != null)
-            logger.trace("Stored time for $task is obtained: ${store[task]?.let { TimeTracker.formatTimePeriod(it) }}")
-        return store[task] ?: 0
-    }
+    override fun getState() = Memento(snapshot)
 
     @Synchronized
-    fun setSavedTimeForLocalTask(task: String, time: Long) {
-        if (time >= 60000){ // more than 1 min
-            store[task] = store[task]?.plus(time) ?: time
-
-            val propertiesStore: PropertiesComponent = PropertiesComponent.getInstance(project)
-            propertiesStore.setValue("spentTimePerTaskStorage.store", store.toString())
+    override fun loadState(state: Memento) {
+        // entries migrated from the legacy property take precedence
+        snapshot = state.tasks + snapshot
+    }
 
-            val trackerNote = TrackerNotification()
-            trackerNote.notify("Added " +
-                    TimeTracker.formatTimePeriod(getSavedTimeForLocalTask(task)) +
-                    " of tracked time for $task to local time tracking records", NotificationType.INFORMATION)
+    fun getSavedTimeForLocalTask(task: String): Long {
+        val time = snapshot[task]
+        if (time != null)
+            logger.trace("Stored time for $task is obtained: ${TimeTracker.formatTimePeriod(time)}")
+        return time ?: 0
+    }
 
-            logger.debug("Time for $task is saved: ${store[task]?.let { TimeTracker.formatTimePeriod(it) }}")
+    /**
+     * @param notify false to skip the "time added" balloon, e.g. for bulk or background updates
+     */
+    fun setSavedTimeForLocalTask(task: String, time: Long, notify: Boolean = true) {
+        if (time >= 60000){ // more than 1 min
+            val updated = synchronized(this) {
+                val value = (snapshot[task] ?: 0) + time
+                snapshot = snapshot + (task to value)
+                value
+            }
+            if (notify) {
+                val trackerNote = TrackerNotification()
+                trackerNote.notify("Added " +
+                        TimeTracker.formatTimePeriod(updated) +
+                        " of tracked time for $task to local time tracking records", NotificationType.INFORMATION)
+            }
+
+            logger.debug("Time for $task is saved: ${TimeTracker.formatTimePeriod(updated)}")
         } else {
             logger.debug("Recorded time for $task = 0. No need to save.")
         }
@@ -60,25 +94,31 @@ class SpentTimePerTaskStorage(override val project: Project) : ComponentAware {
 
     @Synchronized
     fun resetSavedTimeForLocalTask(task: String) {
-        store.remove(task)
-
-        val propertiesStore: PropertiesComponent = PropertiesComponent.getInstance(project)
-        propertiesStore.setValue("spentTimePerTaskStorage.store", store.toString())
-
+        snapshot = snapshot - task
         logger.debug("Time for $task is reset")
     }
 
-    fun getAllStoredItems() : ConcurrentHashMap<String, Long> {
+    /**
+     * @return immutable copy of all the saved items
+     */
+    fun getAllStoredItems(): Map<String, Long> {
         logger.debug("Stored time for all issues obtained")
-        return store
+        return snapshot
     }
 
+    @Synchronized
     fun removeAllSavedItems() {
-        store.clear()
+        snapshot = mapOf()
         logger.debug("Stored time for all issues is cleared")
-
-        val propertiesStore: PropertiesComponent = PropertiesComponent.getInstance(project)
-        propertiesStore.setValue("spentTimePerTaskStorage.store", store.toString())
     }
 
-}
\ No newline at end of file
+    class Memento constructor() {
+        // should stay mutable and public for serialization to work
+        var tasks: MutableMap<String, Long> = mutableMapOf()
+
+        // primary constructor is reserved for serializer
+        constructor(tasks: Map<String, Long>) : this() {
+            this.tasks = LinkedHashMap(tasks)
+        }
+    }
+}
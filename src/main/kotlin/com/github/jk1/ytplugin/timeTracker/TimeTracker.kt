@@ -5,16 +5,22 @@ import com.github.jk1.ytplugin.logger
 import com.github.jk1.ytplugin.tasks.NoActiveYouTrackTaskException
 import com.github.jk1.ytplugin.tasks.NoYouTrackRepositoryException
 import com.github.jk1.ytplugin.timeTracker.actions.StartTrackerAction
+import com.intellij.concurrency.JobScheduler
 import com.intellij.ide.util.PropertiesComponent
 import com.intellij.ide.util.PropertyName
 import com.intellij.notification.NotificationType
+import com.intellij.openapi.Disposable
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
 import com.intellij.ui.components.JBCheckBox
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 @Service
-class TimeTracker(override val project: Project) : ComponentAware {
+class TimeTracker(override val project: Project) : ComponentAware, Disposable {
 
     @PropertyName("timeTracker.issueId")
     @Volatile
@@ -100,7 +106,15 @@ class TimeTracker(override val project: Project) : ComponentAware {
     @Volatile
     var searchQuery: String = ""
 
+    // changes made on the hot path (e.g. by activity tracker) are persisted in batches, see #markDirty
+    private val isDirty = AtomicBoolean(false)
+    @Volatile
+    private var pendingFlush: ScheduledFuture<*>? = null
+    private val stateListeners = CopyOnWriteArrayList<() -> Unit>()
+
     companion object {
+        private const val FLUSH_DELAY_SEC = 5L
+
         fun formatTimePeriodToMinutes(timeInMilSec: Long): String {
             val minutes = TimeUnit.MILLISECONDS.toMinutes(timeInMilSec)
             return if (minutes > 0)
@@ -178,6 +192,7 @@ class TimeTracker(override val project: Project) : ComponentAware {
             isAutoTrackingTemporaryDisabled = false
 
             saveUpdatedFields()
+            fireStateChanged()
         } else {
             logger.debug("Timer is not running to stop")
         }
@@ -192,6 +207,8 @@ class TimeTracker(override val project: Project) : ComponentAware {
                 timeInMills = System.currentTimeMillis() - startTime - pausedTime
                 recordedTime = formatTimePeriodToMinutes(timeInMills)
                 isPaused = true
+                saveUpdatedFields()
+                fireStateChanged()
                 trackerNote.notify("$message for $issueIdReadable", NotificationType.INFORMATION)
             } else {
                 trackerNote.notify("Could not pause - timer is not started", NotificationType.WARNING)
@@ -204,6 +221,7 @@ class TimeTracker(override val project: Project) : ComponentAware {
         trackerNote.notify("Work timer started for $idReadable", NotificationType.INFORMATION)
         isRunning = true
         isPaused = false
+        fireStateChanged()
     }
 
     fun reset() {
@@ -216,12 +234,14 @@ class TimeTracker(override val project: Project) : ComponentAware {
 
 
         startTime = System.currentTimeMillis()
+        fireStateChanged()
     }
 
 
     fun resetTimeOnly() {
         recordedTime = "0"
         timeInMills = 0
+        fireStateChanged()
     }
 
     fun updateIdOnTaskSwitching() {
@@ -229,6 +249,7 @@ class TimeTracker(override val project: Project) : ComponentAware {
             val activeTask = ComponentAware.of(project).taskManagerComponent.getActiveYouTrackTask()
             issueId = activeTask.id
             issueIdReadable = activeTask.id
+            fireStateChanged()
         } catch (e: NoActiveYouTrackTaskException){
             val task = ComponentAware.of(project).taskManagerComponent.getTaskManager().activeTask
             logger.debug("Selected task $task, ${task.id}" +
@@ -249,11 +270,45 @@ class TimeTracker(override val project: Project) : ComponentAware {
         }
     }
 
+    /**
+     * Listener is called on any thread once the timer is started, paused, stopped, reset or switched to another issue
+     */
+    fun addStateListener(parentDisposable: Disposable, listener: () -> Unit) {
+        stateListeners.add(listener)
+        Disposer.register(parentDisposable, Disposable { stateListeners.remove(listener) })
+    }
+
+    private fun fireStateChanged() {
+        stateListeners.forEach { it.invoke() }
+    }
+
+    /**
+     * Schedules timer state persistence. No matter how often it's called, state is saved
+     * at most once in a few seconds and off the EDT.
+     */
+    fun markDirty() {
+        if (isDirty.compareAndSet(false, true)) {
+            pendingFlush = JobScheduler.getScheduler().schedule({
+                if (isDirty.get() && !project.isDisposed) {
+                    saveUpdatedFields()
+                }
+            }, FLUSH_DELAY_SEC, TimeUnit.SECONDS)
+        }
+    }
+
     private fun saveUpdatedFields() {
+        isDirty.set(false)
         val store: PropertiesComponent = PropertiesComponent.getInstance(project)
         store.saveFields(this)
     }
 
+    override fun dispose() {
+        pendingFlush?.cancel(false)
+        if (isDirty.get()) {
+            saveUpdatedFields()
+        }
+    }
+
 
     fun setupValuesNotRequiringTimerStop(type: String?, comment: String, isScheduledModeTurnedOn: Boolean,
                                          scheduledTime: String, postWhenCommitCheckbox: JBCheckBox,
@@ -13,14 +13,12 @@ import com.intellij.openapi.progress.Task
 import com.intellij.openapi.project.Project
 import com.intellij.ui.components.JBLabel
 import org.apache.http.HttpStatus
-import org.apache.http.conn.HttpHostConnectException
 import java.awt.Color
+import java.io.IOException
 import java.text.SimpleDateFormat
 import java.util.*
 import java.util.concurrent.Callable
-import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Future
-import java.util.concurrent.TimeUnit
 
 class TimeTrackerConnector(val repository: YouTrackServer, val project: Project) {
 
@@ -38,72 +36,129 @@ class TimeTrackerConnector(val repository: YouTrackServer, val project: Project)
     fun postWorkItemToServer(
         issueId: String, time: String, type: String,
         comment: String, date: String, attributes: Map<String, String>
-    ) {
+    ): Boolean {
+        val entry = WorkItemJournal.Entry(repository.url, issueId, time, type, comment, date, attributes)
+        val journal = project.getService(WorkItemJournal::class.java)
+        // claimed at once, so a background replay can't pick the entry up before it's posted
+        journal.append(listOf(entry), claim = true)
+        val posted = try {
+            postClaimedWorkItem(entry)
+        } finally {
+            journal.release(entry)
+        }
+        if (posted) {
+            of(project).spentTimePerTaskStorage.resetSavedTimeForLocalTask(issueId)
+        }
+        return posted
+    }
+
+    /**
+     * Work item is kept in the journal until the server accepts it
+     *
+     * @param batched batched posts leave success notification and work item store refresh to the caller
+     * @param quiet don't notify about failures, e.g. for background retries
+     * @return true if work item has been posted
+     */
+    fun postJournaledWorkItem(entry: WorkItemJournal.Entry, batched: Boolean = false, quiet: Boolean = false): Boolean {
+        val journal = project.getService(WorkItemJournal::class.java)
+        if (!journal.claim(entry)) {
+            logger.debug("Work item for ${entry.issueId} is being posted already or has been posted")
+            return false
+        }
+        try {
+            return postClaimedWorkItem(entry, batched, quiet)
+        } finally {
+            journal.release(entry)
+        }
+    }
 
-        logger.debug("Try posting work item for $issueId to ${repository.url}")
-        val storage = of(project).spentTimePerTaskStorage
+    private fun postClaimedWorkItem(entry: WorkItemJournal.Entry, batched: Boolean = false, quiet: Boolean = false): Boolean {
+        logger.debug("Try posting work item for ${entry.issueId} to ${repository.url}")
+        val journal = project.getService(WorkItemJournal::class.java)
         val trackerNote = TrackerNotification()
 
+        journal.markPosting(entry)
         val postStatus = try {
-            TimeTrackerRestClient(repository).postNewWorkItem(issueId, time, type, comment, date, attributes)
-        } catch (e: HttpHostConnectException){
-            trackerNote.notify("Connection to YouTrack server is lost, please check your network connection", NotificationType.WARNING)
+            TimeTrackerRestClient(repository).postNewWorkItem(entry.issueId, entry.minutes, entry.type, entry.comment,
+                    entry.date, entry.attributes)
+        } catch (e: IOException) {
+            if (!quiet) {
+                trackerNote.notify("Connection to YouTrack server is lost, please check your network connection", NotificationType.WARNING)
+            }
             logger.warn("Connection to network lost: ${e.message}")
-        } catch (e: IllegalArgumentException){
+            null
+        } catch (e: IllegalArgumentException) {
+            // unknown work item type, malformed duration or date
+            dropRejectedWorkItem(entry, e.message ?: "malformed work item")
+            return false
+        } catch (e: Exception) {
+            logger.warn("Failed to post work item for ${entry.issueId}: ${e.message}")
             logger.debug(e)
+            null
+        }
+        if (postStatus != null && isRejected(postStatus)) {
+            val reason = if (postStatus == HttpStatus.SC_FORBIDDEN)
+                "time tracking might be disabled for the project"
+            else
+                "server responded with $postStatus"
+            dropRejectedWorkItem(entry, reason)
+            return false
         }
-        when (postStatus) {
-            HttpStatus.SC_OK -> {
+        if (postStatus == HttpStatus.SC_OK) {
+            journal.markDone(entry)
+            if (!batched) {
                 trackerNote.notify(
-                    "Spent time was successfully added for $issueId",
+                    "Spent time was successfully added for ${entry.issueId}",
                     NotificationType.INFORMATION
                 )
-
                 of(project).issueWorkItemsStoreComponent[repository].update(repository)
-                storage.resetSavedTimeForLocalTask(issueId)
-            }
-            HttpStatus.SC_FORBIDDEN -> {
-                trackerNote.notify(
-                    "Unable to post time to YouTrack. Please check if time tracking is enabled for this project. " +
-                            "A record for $time min of tracked time has been saved locally.", NotificationType.WARNING
-                )
-
-                storage.resetSavedTimeForLocalTask(issueId)
-                storage.setSavedTimeForLocalTask(issueId, TimeUnit.MINUTES.toMillis(time.toLong()))
-            }
-            else -> {
-                trackerNote.notify(
-                    "Unable to post time to YouTrack. See IDE log for details. " +
-                            "A record for $time min of tracked time has been saved locally.", NotificationType.WARNING
-                )
-
-                storage.resetSavedTimeForLocalTask(issueId)
-                storage.setSavedTimeForLocalTask(issueId, TimeUnit.MINUTES.toMillis(time.toLong()))
             }
+            return true
         }
+        journal.markFailed(entry)
+        if (!quiet) {
+            trackerNote.notify("Unable to post time to YouTrack. See IDE log for details. " +
+                    "A record for ${entry.minutes} min of tracked time has been saved locally.", NotificationType.WARNING)
+        }
+        return false
+    }
+
+    /**
+     * Client errors are permanent, the server is never going to accept such a work item.
+     * Authorization and throttling failures are worth a retry though.
+     */
+    private fun isRejected(status: Int) = status in 400..499 && status !in listOf(HttpStatus.SC_UNAUTHORIZED,
+            HttpStatus.SC_REQUEST_TIMEOUT, 429)
+
+    /**
+     * Drops the work item from the journal instead of retrying it forever. The user is notified once,
+     * the work item details are logged to recover the time manually if needed.
+     */
+    private fun dropRejectedWorkItem(entry: WorkItemJournal.Entry, reason: String) {
+        project.getService(WorkItemJournal::class.java).markDropped(entry)
+        logger.warn("Work item rejected by ${repository.url} and dropped: $reason, issue ${entry.issueId}, " +
+                "${entry.minutes} min, type '${entry.type}', date ${entry.date}, comment '${entry.comment}'")
+        TrackerNotification().notify("YouTrack has rejected ${entry.minutes} min of tracked time for ${entry.issueId}: " +
+                "$reason. The record has been removed from local time tracking records, see IDE log for details.",
+                NotificationType.ERROR)
     }
 
-    fun postSavedWorkItemsToServer(savedItems: ConcurrentHashMap<String, Long>) {
+    fun postSavedWorkItemsToServer(savedItems: Map<String, Long>) {
         logger.debug("Try posting work item to ${repository.url}")
 
         val task = object : Task.Modal(project, "Post Time to YouTrack", true) {
             override fun run(indicator: ProgressIndicator) {
                 indicator.text = "Post time tracking items to " + repository.url + "..."
-                indicator.fraction = 0.0
-                indicator.isIndeterminate = true
-
                 val timeTracker = of(project).timeTrackerComponent
-
-                savedItems.forEach { entry ->
-                    ApplicationManager.getApplication().executeOnPooledThread(
-                        Callable {
-                            postWorkItemToServer(
-                                entry.key, TimeTracker.formatTimePeriodToMinutes(entry.value), timeTracker.type,
-                                timeTracker.comment, getCurrentDate(), mapOf()
-                            )
-                        })
+                val storage = of(project).spentTimePerTaskStorage
+                // locally saved time is moved to the journal and posted along with the items pending there
+                val entries = savedItems.map { entry ->
+                    WorkItemJournal.Entry(repository.url, entry.key, TimeTracker.formatTimePeriodToMinutes(entry.value),
+                            timeTracker.type, timeTracker.comment, getCurrentDate())
                 }
-                of(project).issueWorkItemsStoreComponent[repository].update(repository)
+                project.getService(WorkItemJournal::class.java).append(entries)
+                entries.forEach { storage.resetSavedTimeForLocalTask(it.issueId) }
+                WorkItemOutbox(repository, project).replay(indicator)
             }
         }
         ProgressManager.getInstance().run(task)
@@ -122,7 +177,6 @@ class TimeTrackerConnector(val repository: YouTrackServer, val project: Project)
                         selectedId, time, selectedType, comment,
                         date.time.toString(), attributes.filter { it.value.isNotEmpty() }
                     )
-                    of(repository.project).issueWorkItemsStoreComponent[repository].update(repository)
                     HttpStatus.SC_OK
                 } catch (e: IllegalStateException) {
                     logger.warn("Error in item type: ${e.message}")
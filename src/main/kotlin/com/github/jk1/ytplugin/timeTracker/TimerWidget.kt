@@ -1,42 +1,50 @@
 package com.github.jk1.ytplugin.timeTracker
 
 import com.github.jk1.ytplugin.ComponentAware
-import com.github.jk1.ytplugin.logger
 import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationActivationListener
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.wm.CustomStatusBarWidget
+import com.intellij.openapi.wm.IdeFrame
 import com.intellij.openapi.wm.StatusBar
 import java.awt.Font
 import java.util.concurrent.TimeUnit
 import javax.swing.JLabel
+import javax.swing.SwingUtilities
 import javax.swing.Timer
 
+/**
+ * Displays time tracked for the active issue. The label is updated on timer state changes and once
+ * the displayed minute is over. No updates are made while the timer is paused or the IDE is inactive.
+ */
 class TimerWidget(val timeTracker: TimeTracker, private val parentDisposable: Disposable, override val project: Project) : CustomStatusBarWidget, ComponentAware {
 
-    private val label = JLabel(time())
-    private val timer = Timer(1000) { label.text = time() }
-
-    private val logsTimer = Timer(120000) {
-        logger.debug(
-            "\nSystem.currentTimeMillis: ${System.currentTimeMillis()} \n" +
-                    "timeTracker.startTime: ${timeTracker.startTime} \n" +
-                    "timeTracker.pausedTime: ${timeTracker.pausedTime} \n")
+    companion object {
+        private val MINUTE = TimeUnit.MINUTES.toMillis(1)
+        // makes sure the next minute has started by the time the label is updated
+        private const val SLACK_MS = 50
     }
 
+    private val label = JLabel(time())
+    private val timer = Timer(0) { refresh() }.apply { isRepeats = false }
+
     private var trackingDisposable: Disposable? = null
 
 
-    fun time(): String {
+    fun time() = format(getRecordedTime())
+
+    private fun getRecordedTime(): Long {
         val savedTime = spentTimePerTaskStorage.getSavedTimeForLocalTask(taskManagerComponent.getActiveTask().id)
-        val recordedTime = if (timeTracker.isPaused) {
+        return if (timeTracker.isPaused) {
             timeTracker.getRecordedTimeInMills() + savedTime
         } else {
             System.currentTimeMillis() - timeTracker.startTime - timeTracker.pausedTime + savedTime
         }
+    }
 
-        logger.debug("\nsavedTime: $savedTime \nrecordedTime: $recordedTime \n \n")
-
+    private fun format(recordedTime: Long): String {
         val time = String.format("%02dh %02dm",
                 TimeUnit.MILLISECONDS.toHours(recordedTime),
                 TimeUnit.MILLISECONDS.toMinutes(recordedTime) -
@@ -44,16 +52,36 @@ class TimerWidget(val timeTracker: TimeTracker, private val parentDisposable: Di
         return "Time spent on issue ${timeTracker.issueId}: $time"
     }
 
+    private fun refresh() {
+        timer.stop()
+        if (trackingDisposable == null) {
+            return
+        }
+        val recordedTime = getRecordedTime()
+        label.text = format(recordedTime)
+        if (timeTracker.isRunning && !timeTracker.isPaused && ApplicationManager.getApplication().isActive) {
+            timer.initialDelay = (MINUTE - Math.floorMod(recordedTime, MINUTE)).toInt() + SLACK_MS
+            timer.start()
+        }
+    }
 
     override fun install(statusBar: StatusBar) {
         val f: Font = label.font
         label.font = f.deriveFont(f.style or Font.BOLD)
-        trackingDisposable = ActivityTracker.newDisposable(parentDisposable)
-        timer.start()
-        logsTimer.start()
+        val disposable = ActivityTracker.newDisposable(parentDisposable)
+        trackingDisposable = disposable
+        timeTracker.addStateListener(disposable) { SwingUtilities.invokeLater { refresh() } }
+        ApplicationManager.getApplication().messageBus.connect(disposable)
+                .subscribe(ApplicationActivationListener.TOPIC, object : ApplicationActivationListener {
+                    override fun applicationActivated(ideFrame: IdeFrame) = refresh()
+
+                    override fun applicationDeactivated(ideFrame: IdeFrame) = timer.stop()
+                })
+        refresh()
     }
 
     override fun dispose() {
+        timer.stop()
         if (trackingDisposable != null) {
             Disposer.dispose(trackingDisposable!!)
             trackingDisposable = null
@@ -67,4 +95,4 @@ class TimerWidget(val timeTracker: TimeTracker, private val parentDisposable: Di
     override fun ID(): String {
         return "Time Tracking Clock"
     }
-}
\ No newline at end of file
+}
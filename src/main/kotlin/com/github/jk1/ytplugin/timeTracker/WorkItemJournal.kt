@@ -0,0 +1,224 @@
+package com.github.jk1.ytplugin.timeTracker
+
+import com.github.jk1.ytplugin.logger
+import com.google.gson.Gson
+import com.google.gson.JsonObject
+import com.google.gson.JsonParser
+import com.intellij.openapi.application.PathManager
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.io.FileUtil
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.AtomicMoveNotSupportedException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.*
+import java.util.concurrent.locks.ReentrantLock
+
+/**
+ * Append-only journal of work items waiting to be posted to YouTrack. Every work item is journaled
+ * with its full payload before the post, so no tracked time is lost if the IDE crashes or the server
+ * is unreachable. The journal is a json-lines file, each batch of records is fsync'd before the method returns.
+ *
+ * A post attempt is recorded with its start time before the request is sent. Entries found with an unfinished
+ * attempt after a crash must be checked against the server before they are posted again, see [isInFlight].
+ */
+@Service
+class WorkItemJournal(private val project: Project) {
+
+    companion object {
+        private const val ADD = "add"
+        private const val POSTING = "posting"
+        private const val DONE = "done"
+        private const val FAILED = "failed"
+        // rejected by the server for good, e.g. the issue has been deleted
+        private const val DROPPED = "dropped"
+        // journal is compacted once it holds that many records for already posted items
+        private const val COMPACTION_THRESHOLD = 100
+    }
+
+    class Entry(val id: String, val repoUrl: String, val issueId: String, val minutes: String, val type: String,
+                val comment: String, val date: String, val attributes: Map<String, String> = mapOf()) {
+
+        constructor(repoUrl: String, issueId: String, minutes: String, type: String, comment: String, date: String,
+                    attributes: Map<String, String> = mapOf())
+                : this(UUID.randomUUID().toString(), repoUrl, issueId, minutes, type, comment, date, attributes)
+    }
+
+    private val gson = Gson()
+    private val path: Path = Paths.get(PathManager.getSystemPath(), "youtrack", "outbox",
+            "${FileUtil.sanitizeFileName(project.locationHash)}.log")
+    private val pending = LinkedHashMap<String, Entry>()
+    // post attempt start time by entry id, 0 for attempts journaled without it
+    private val inFlight = mutableMapOf<String, Long>()
+    // entries some thread in this IDE is posting right now, never persisted
+    private val claimed = mutableSetOf<String>()
+    private var obsoleteRecords = 0
+    // only a single replay of the journal may run at a time, otherwise an entry might be posted twice
+    val replayLock = ReentrantLock()
+
+    init {
+        load()
+    }
+
+    /**
+     * @param claim entries are claimed for the calling thread right away, see [claim]
+     */
+    @Synchronized
+    fun append(entries: List<Entry>, claim: Boolean = false) {
+        entries.forEach { pending[it.id] = it }
+        if (claim) {
+            claimed.addAll(entries.map { it.id })
+        }
+        write(entries.map { record(ADD, it.id).apply { add("entry", gson.toJsonTree(it)) } })
+    }
+
+    /**
+     * Reserves the entry for the calling thread, so no one else posts it at the same time
+     *
+     * @return false if the entry is being posted by another thread or isn't pending anymore
+     */
+    @Synchronized
+    fun claim(entry: Entry) = pending.containsKey(entry.id) && claimed.add(entry.id)
+
+    @Synchronized
+    fun release(entry: Entry) {
+        claimed.remove(entry.id)
+    }
+
+    @Synchronized
+    fun isClaimed(entry: Entry) = claimed.contains(entry.id)
+
+    @Synchronized
+    fun markPosting(entry: Entry) {
+        val startedAt = System.currentTimeMillis()
+        inFlight[entry.id] = startedAt
+        write(listOf(record(POSTING, entry.id).apply { addProperty("at", startedAt) }))
+    }
+
+    @Synchronized
+    fun markDone(entry: Entry) {
+        pending.remove(entry.id)
+        inFlight.remove(entry.id)
+        write(listOf(record(DONE, entry.id)))
+        obsoleteRecords += 3
+        if (obsoleteRecords >= COMPACTION_THRESHOLD) {
+            compact()
+        }
+    }
+
+    @Synchronized
+    fun markDropped(entry: Entry) {
+        pending.remove(entry.id)
+        inFlight.remove(entry.id)
+        write(listOf(record(DROPPED, entry.id)))
+        obsoleteRecords += 3
+    }
+
+    @Synchronized
+    fun markFailed(entry: Entry) {
+        inFlight.remove(entry.id)
+        write(listOf(record(FAILED, entry.id)))
+        obsoleteRecords += 2
+    }
+
+    @Synchronized
+    fun getPending(repoUrl: String) = pending.values.filter { it.repoUrl == repoUrl }
+
+    /**
+     * @return true if the post attempt for this entry might have reached the server before the IDE went down
+     */
+    @Synchronized
+    fun isInFlight(entry: Entry) = inFlight.containsKey(entry.id)
+
+    /**
+     * @return local time the last unfinished post attempt has started at, 0 if unknown
+     */
+    @Synchronized
+    fun getPostingStartTime(entry: Entry) = inFlight[entry.id] ?: 0
+
+    /**
+     * Rewrites the journal with the pending entries only
+     */
+    @Synchronized
+    fun compact() {
+        try {
+            val records = pending.values.flatMap { entry ->
+                val add = record(ADD, entry.id).apply { add("entry", gson.toJsonTree(entry)) }
+                val startedAt = inFlight[entry.id]
+                if (startedAt != null) listOf(add, record(POSTING, entry.id).apply { addProperty("at", startedAt) })
+                else listOf(add)
+            }
+            Files.createDirectories(path.parent)
+            val tempFile = path.resolveSibling("${path.fileName}.tmp")
+            FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE).use { it.writeRecords(records) }
+            try {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } catch (e: AtomicMoveNotSupportedException) {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING)
+            }
+            obsoleteRecords = 0
+            logger.debug("Work item journal compacted, ${pending.size} entries pending")
+        } catch (e: Exception) {
+            logger.warn("Failed to compact work item journal $path", e)
+        }
+    }
+
+    private fun load() {
+        if (!Files.exists(path)) {
+            return
+        }
+        try {
+            Files.readAllLines(path, StandardCharsets.UTF_8).filter { it.isNotBlank() }.forEach { line ->
+                try {
+                    val record = JsonParser.parseString(line).asJsonObject
+                    val id = record.get("id").asString
+                    when (record.get("op").asString) {
+                        ADD -> pending[id] = gson.fromJson(record.get("entry"), Entry::class.java)
+                        POSTING -> inFlight.put(id, record.get("at")?.asLong ?: 0)
+                        FAILED -> inFlight.remove(id)
+                        DONE, DROPPED -> {
+                            pending.remove(id)
+                            inFlight.remove(id)
+                        }
+                    }
+                } catch (e: Exception) {
+                    // the last record might be partially written if the IDE crashed
+                    logger.warn("Malformed work item journal record skipped: $line")
+                }
+            }
+            logger.debug("Work item journal loaded, ${pending.size} entries pending")
+        } catch (e: Exception) {
+            logger.warn("Failed to load work item journal $path", e)
+        }
+    }
+
+    private fun write(records: List<JsonObject>) {
+        try {
+            Files.createDirectories(path.parent)
+            FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                    .use { it.writeRecords(records) }
+        } catch (e: Exception) {
+            logger.warn("Failed to write work item journal $path", e)
+        }
+    }
+
+    private fun FileChannel.writeRecords(records: List<JsonObject>) {
+        val buffer = ByteBuffer.wrap(records.joinToString("") { "$it\n" }.toByteArray(StandardCharsets.UTF_8))
+        while (buffer.hasRemaining()) {
+            write(buffer)
+        }
+        force(false)
+    }
+
+    private fun record(op: String, id: String) = JsonObject().apply {
+        addProperty("op", op)
+        addProperty("id", id)
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.jk1.ytplugin.timeTracker
+
+import com.github.jk1.ytplugin.ComponentAware
+import com.github.jk1.ytplugin.logger
+import com.github.jk1.ytplugin.rest.TimeTrackerRestClient
+import com.github.jk1.ytplugin.tasks.YouTrackServer
+import com.intellij.ide.util.PropertiesComponent
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.project.Project
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+/**
+ * Posts work items pending in the [WorkItemJournal] to YouTrack with a limited number of parallel requests.
+ * Work item store is refreshed once the whole batch is processed.
+ */
+class WorkItemOutbox(private val repository: YouTrackServer, private val project: Project) {
+
+    companion object {
+        const val PARALLELISM_KEY = "youtrack.workItems.postParallelism"
+        private const val DEFAULT_PARALLELISM = 4
+
+        fun getParallelism() = PropertiesComponent.getInstance().getInt(PARALLELISM_KEY, DEFAULT_PARALLELISM).coerceAtLeast(1)
+    }
+
+    private val journal: WorkItemJournal
+        get() = project.getService(WorkItemJournal::class.java)
+
+    /**
+     * Posts all the work items pending for the server. Blocks until every item is either posted
+     * or left in the journal for the next attempt.
+     *
+     * @param quiet replays in background only notify about successfully posted items
+     * @return number of work items successfully posted
+     */
+    fun replay(indicator: ProgressIndicator? = null, quiet: Boolean = false): Int {
+        val lock = journal.replayLock
+        if (!lock.tryLock(if (quiet) 0 else 30, TimeUnit.SECONDS)) {
+            logger.debug("Work item journal is being replayed already")
+            return 0
+        }
+        try {
+            return replayLocked(indicator, quiet)
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    private fun replayLocked(indicator: ProgressIndicator?, quiet: Boolean): Int {
+        // entries claimed by other threads are being posted right now and can't be checked on the server yet
+        val items = journal.getPending(repository.url).filterNot { journal.isClaimed(it) || isAlreadyPosted(it) }
+        if (items.isEmpty()) {
+            journal.compact()
+            return 0
+        }
+        val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("YouTrack Work Item Outbox", getParallelism())
+        val completion = ExecutorCompletionService<Boolean>(executor)
+        val connector = TimeTrackerConnector(repository, project)
+        val futures: List<Future<Boolean>> = items.map { item ->
+            completion.submit(Callable { connector.postJournaledWorkItem(item, batched = true, quiet = quiet) })
+        }
+        indicator?.isIndeterminate = false
+        var posted = 0
+        try {
+            for (done in 1..items.size) {
+                var result: Future<Boolean>? = null
+                while (result == null) {
+                    indicator?.checkCanceled()
+                    result = completion.poll(100, TimeUnit.MILLISECONDS)
+                }
+                try {
+                    if (result.get()) {
+                        posted++
+                    }
+                } catch (e: ExecutionException) {
+                    logger.warn("Failed to post work item: ${e.cause?.message}")
+                    logger.debug(e)
+                }
+                indicator?.fraction = done.toDouble() / items.size
+                indicator?.text2 = "$done of ${items.size} work items processed"
+            }
+        } finally {
+            futures.forEach { it.cancel(false) }
+            executor.shutdown()
+        }
+        journal.compact()
+        logger.debug("Posted $posted of ${items.size} work items to ${repository.url}")
+        if (posted > 0) {
+            TrackerNotification().notify("Spent time was successfully added for $posted of ${items.size} " +
+                    "locally saved work items", NotificationType.INFORMATION)
+            ComponentAware.of(project).issueWorkItemsStoreComponent[repository].update(repository)
+        }
+        return posted
+    }
+
+    /**
+     * An attempt to post the item might have been interrupted by the IDE crash after the server has accepted it.
+     * Such items are looked up on the server before posting them again.
+     */
+    private fun isAlreadyPosted(item: WorkItemJournal.Entry): Boolean {
+        if (!journal.isInFlight(item)) {
+            return false
+        }
+        val client = TimeTrackerRestClient(repository)
+        return when (client.hasWorkItem(item.issueId, item.minutes, item.type, item.comment, item.date,
+                journal.getPostingStartTime(item))) {
+            true -> {
+                logger.debug("Work item for ${item.issueId} has already been posted, dropping it from the journal")
+                journal.markDone(item)
+                true
+            }
+            false -> false
+            // can't tell at the moment, keep it pending for the next attempt
+            null -> true
+        }
+    }
+}
@@ -18,6 +18,7 @@ import javax.swing.AbstractAction
 import javax.swing.AbstractListModel
 import javax.swing.KeyStroke
 import javax.swing.SwingUtilities
+import kotlin.math.min
 
 class IssueList(val repo: YouTrackServer) : JBLoadingPanel(BorderLayout(), repo.project), ComponentAware {
 
@@ -38,6 +39,7 @@ class IssueList(val repo: YouTrackServer) : JBLoadingPanel(BorderLayout(), repo.
     private fun initIssueListModel() {
         issueList.emptyText.clear()
         issueList.model = issueListModel
+        issueListModel.syncSize()
         startLoading()
         if (issueStoreComponent[repo].getAllIssues().isEmpty()) {
             issueStoreComponent[repo].update(repo).doWhenDone {
@@ -52,13 +54,16 @@ class IssueList(val repo: YouTrackServer) : JBLoadingPanel(BorderLayout(), repo.
             SwingUtilities.invokeLater {
                 val placeholder = issueList.emptyText
                 placeholder.clear()
-                if (issueStoreComponent[repo].getAllIssues().isEmpty()) {
+                val connectionStatus = serverBackoffComponent.getStatusMessage(repo)
+                if (issueStoreComponent[repo].getAllIssues().isEmpty() && connectionStatus != null) {
+                    placeholder.appendText(connectionStatus)
+                } else if (issueStoreComponent[repo].getAllIssues().isEmpty()) {
                     placeholder.appendText("No issues found. Edit search request or ")
                     placeholder.appendText("configuration", SimpleTextAttributes.LINK_ATTRIBUTES
                     ) { SetupDialog(project, repo, false).show() }
                 }
                 issueListModel.update()
-                val updatedSelectedIssueIndex = issueStoreComponent[repo].indexOf(getSelectedIssue())
+                val updatedSelectedIssueIndex = getSelectedIssue()?.let { issueStoreComponent[repo].getIndex(it) } ?: -1
                 if (updatedSelectedIssueIndex == -1) {
                     issueList.clearSelection()
                 } else {
@@ -121,8 +126,28 @@ class IssueList(val repo: YouTrackServer) : JBLoadingPanel(BorderLayout(), repo.
         // we still can get this method invoked from swing focus lost handler on project close
         override fun getSize() = if (project.isDisposed) 0 else issueStoreComponent[repo].getAllIssues().size
 
+        private var lastKnownSize = 0
+
+        /**
+         * List reads all the rows at once, when the model is installed, the rows it shows are not new anymore
+         */
+        fun syncSize() {
+            lastKnownSize = size
+        }
+
         fun update() {
-            fireContentsChanged(this, 0, size)
+            // report appended and removed rows separately to let the list keep the scroll position
+            val newSize = size
+            if (newSize > lastKnownSize) {
+                fireIntervalAdded(this, lastKnownSize, newSize - 1)
+            } else if (newSize < lastKnownSize) {
+                fireIntervalRemoved(this, newSize, lastKnownSize - 1)
+            }
+            val retainedSize = min(newSize, lastKnownSize)
+            if (retainedSize > 0) {
+                fireContentsChanged(this, 0, retainedSize - 1)
+            }
+            lastKnownSize = newSize
         }
     }
 }
\ No newline at end of file
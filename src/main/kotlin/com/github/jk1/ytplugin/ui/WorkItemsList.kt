@@ -62,7 +62,10 @@ class WorkItemsList(val repo: YouTrackServer) : JBLoadingPanel(BorderLayout(), r
                 val placeholder = issueWorkItemsList.emptyText
                 placeholder.clear()
                 // use reflection to avoid IDE version compatibility issues
-                if (issueWorkItemsStoreComponent[repo].getAllWorkItems().isEmpty()) {
+                val connectionStatus = serverBackoffComponent.getStatusMessage(repo)
+                if (issueWorkItemsStoreComponent[repo].getAllWorkItems().isEmpty() && connectionStatus != null) {
+                    placeholder.appendText(connectionStatus)
+                } else if (issueWorkItemsStoreComponent[repo].getAllWorkItems().isEmpty()) {
                     placeholder.appendText("No work items found.")
                     if (ApplicationInfoImpl.getInstance().minorVersion.toDouble() >= 2) {
                         StatusText::class.java.getMethod("appendLine",
@@ -0,0 +1,52 @@
+package com.github.jk1.ytplugin.commands
+
+import com.github.jk1.ytplugin.commands.lang.CommandLexer
+import com.github.jk1.ytplugin.commands.model.CommandHighlightRange
+import com.google.gson.JsonParser
+import org.junit.Assert
+import org.junit.Test
+
+class CommandLexerTest {
+
+    @Test
+    fun `command is split into fields, keywords and values`() {
+        Assert.assertEquals(listOf(
+                "FIELD:State", "COLON::", "WHITE_SPACE: ", "LBRACE:{", "STRING:In Progress", "RBRACE:}",
+                "WHITE_SPACE: ", "KEYWORD:add", "WHITE_SPACE: ", "KEYWORD:tag", "WHITE_SPACE: ", "STRING:\"to do\"",
+                "WHITE_SPACE: ", "HASH:#", "FIELD:Fixed", "WHITE_SPACE: ", "ANY_TEXT:Bug"
+        ), tokens(CommandLexer(), "State: {In Progress} add tag \"to do\" #Fixed Bug"))
+    }
+
+    @Test
+    fun `lexing restarts inside unterminated braces`() {
+        val lexer = CommandLexer()
+        val text = "for {John Do"
+        lexer.start(text)
+        while (lexer.tokenType.toString() != "LBRACE") {
+            lexer.advance()
+        }
+        lexer.advance()
+        lexer.start(text, lexer.tokenStart, text.length, lexer.state)
+        Assert.assertEquals("STRING", lexer.tokenType.toString())
+        Assert.assertEquals("John Do", text.substring(lexer.tokenStart, lexer.tokenEnd))
+    }
+
+    @Test
+    fun `words highlighted by the server are learned`() {
+        val vocabulary = CommandVocabulary()
+        val range = JsonParser.parseString("""{"start": 0, "length": 3, "style": "field"}""")
+        vocabulary.learn("Bug", listOf(CommandHighlightRange(range)))
+        Assert.assertEquals(listOf("FIELD:Bug", "WHITE_SPACE: ", "ANY_TEXT:Feature"),
+                tokens(CommandLexer(vocabulary), "Bug Feature"))
+    }
+
+    private fun tokens(lexer: CommandLexer, text: String): List<String> {
+        val tokens = mutableListOf<String>()
+        lexer.start(text)
+        while (lexer.tokenType != null) {
+            tokens.add("${lexer.tokenType}:${text.substring(lexer.tokenStart, lexer.tokenEnd)}")
+            lexer.advance()
+        }
+        return tokens
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.jk1.ytplugin.rest
+
+import com.google.gson.JsonParser
+import com.google.gson.stream.JsonReader
+import org.junit.Assert
+import org.junit.Test
+import java.io.File
+
+class IssueJsonParserTest {
+
+    private val url = "http://localhost:8080"
+
+    @Test
+    fun `streaming issue parsing is equivalent to tree parsing`() {
+        val file = File("src/test/resources/com/github/jk1/ytplugin/issues/issues_response.json")
+
+        val expected = JsonParser.parseString(file.readText()).asJsonArray.mapNotNull { IssueJsonParser.parseIssue(it, url) }
+        val actual = JsonReader(file.bufferedReader()).use { IssueJsonParser.parseIssues(it, url) }
+
+        Assert.assertEquals(listOf("TP-1", "TP-3"), actual.map { it.id })
+        Assert.assertEquals(expected.map { it.json }, actual.map { it.json })
+        Assert.assertEquals(expected.map { it.resolved }, actual.map { it.resolved })
+        Assert.assertEquals(expected.map { it.updateDate }, actual.map { it.updateDate })
+    }
+
+    @Test
+    fun `streaming work item parsing is equivalent to tree parsing`() {
+        val file = File("src/test/resources/com/github/jk1/ytplugin/issues/work_items_response.json")
+
+        val expected = JsonParser.parseString(file.readText()).asJsonArray.mapNotNull { IssueJsonParser.parseWorkItem(it) }
+        val actual = JsonReader(file.bufferedReader()).use { IssueJsonParser.parseWorkItems(it) }
+
+        Assert.assertEquals(listOf("105-1", "105-2"), actual.map { it.id })
+        Assert.assertEquals(listOf("TP-1", "TP-3"), actual.map { it.issueId })
+        Assert.assertEquals(expected.map { it.json }, actual.map { it.json })
+        Assert.assertEquals("None", actual[1].type)
+    }
+
+    @Test
+    fun `empty response is parsed as an empty list`() {
+        val actual = JsonReader("[]".reader()).use { IssueJsonParser.parseIssues(it, url) }
+
+        Assert.assertTrue(actual.isEmpty())
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.jk1.ytplugin.workItems
+
+import com.github.jk1.ytplugin.timeTracker.ActivityTracker
+import org.junit.Assert
+import org.junit.Ignore
+import org.junit.Test
+import java.awt.event.KeyEvent
+import java.awt.event.MouseEvent
+import java.awt.event.PaintEvent
+import java.awt.event.WindowEvent
+import java.text.SimpleDateFormat
+import java.time.LocalDateTime
+
+/**
+ * Rough per-event overhead of the activity tracker event filtering. Not a replacement for JMH,
+ * but good enough to spot regressions on the event queue hot path. Results are printed to stdout.
+ *
+ * Wall-clock timings are too noisy for CI, so the benchmark is excluded from the regular test run.
+ * Remove [Ignore] locally to run it.
+ */
+@Ignore("Benchmark, run manually")
+class ActivityTrackerBenchmark {
+
+    private val eventIds = intArrayOf(MouseEvent.MOUSE_MOVED, PaintEvent.UPDATE, KeyEvent.KEY_PRESSED,
+            MouseEvent.MOUSE_ENTERED, WindowEvent.WINDOW_ACTIVATED, KeyEvent.KEY_RELEASED, MouseEvent.MOUSE_CLICKED)
+
+    @Test
+    fun `event filtering overhead`() {
+        val scheduledPeriod = "19:00:0"
+        // what scheduled posting check used to do for every event in the queue
+        val before = measure { id ->
+            val currentTime = LocalDateTime.now()
+            val formatter = SimpleDateFormat("mm")
+            val hour = formatter.format(SimpleDateFormat("mm").parse(currentTime.hour.toString()))
+            val minute = formatter.format(SimpleDateFormat("mm").parse(currentTime.minute.toString()))
+            val time = hour + ":" + minute + ":" + currentTime.second.toString()
+            if (time == scheduledPeriod) id else 0
+        }
+        val after = measure { id -> ActivityTracker.eventKind(id) }
+
+        println("Activity tracker per-event overhead: before ${before}ns, after ${after}ns")
+        Assert.assertTrue(after < before)
+    }
+
+    private inline fun measure(handler: (Int) -> Int): Long {
+        var blackhole = 0
+        repeat(WARMUP_ITERATIONS) { blackhole += handler(eventIds[it % eventIds.size]) }
+        val start = System.nanoTime()
+        repeat(MEASURED_ITERATIONS) { blackhole += handler(eventIds[it % eventIds.size]) }
+        val elapsed = System.nanoTime() - start
+        if (blackhole == 42) println() // keep the results alive
+        return elapsed / MEASURED_ITERATIONS
+    }
+
+    companion object {
+        private const val WARMUP_ITERATIONS = 20000
+        private const val MEASURED_ITERATIONS = 100000
+    }
+}
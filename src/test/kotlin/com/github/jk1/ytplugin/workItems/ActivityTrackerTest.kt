@@ -0,0 +1,36 @@
+package com.github.jk1.ytplugin.workItems
+
+import com.github.jk1.ytplugin.timeTracker.ActivityTracker
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.awt.event.FocusEvent
+import java.awt.event.KeyEvent
+import java.awt.event.MouseEvent
+import java.awt.event.PaintEvent
+import java.awt.event.WindowEvent
+
+class ActivityTrackerTest {
+
+    @Test
+    fun `clicks and key presses are input events`() {
+        listOf(MouseEvent.MOUSE_CLICKED, KeyEvent.KEY_PRESSED).forEach {
+            assertEquals(ActivityTracker.INPUT_EVENT, ActivityTracker.eventKind(it))
+        }
+    }
+
+    @Test
+    fun `mouse moves and wheel scrolls are pointer move events`() {
+        listOf(MouseEvent.MOUSE_MOVED, MouseEvent.MOUSE_WHEEL).forEach {
+            assertEquals(ActivityTracker.POINTER_MOVE_EVENT, ActivityTracker.eventKind(it))
+        }
+    }
+
+    @Test
+    fun `other events do not count as user activity`() {
+        listOf(KeyEvent.KEY_RELEASED, KeyEvent.KEY_TYPED, MouseEvent.MOUSE_ENTERED, MouseEvent.MOUSE_EXITED,
+                MouseEvent.MOUSE_PRESSED, MouseEvent.MOUSE_RELEASED, MouseEvent.MOUSE_DRAGGED, PaintEvent.UPDATE,
+                PaintEvent.PAINT, WindowEvent.WINDOW_ACTIVATED, FocusEvent.FOCUS_GAINED).forEach {
+            assertEquals("event $it", ActivityTracker.OTHER_EVENT, ActivityTracker.eventKind(it))
+        }
+    }
+}
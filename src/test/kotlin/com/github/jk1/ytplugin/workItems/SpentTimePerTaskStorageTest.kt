@@ -0,0 +1,96 @@
+package com.github.jk1.ytplugin.workItems
+
+import com.github.jk1.ytplugin.ComponentAware
+import com.github.jk1.ytplugin.IdeaProjectTrait
+import com.github.jk1.ytplugin.timeTracker.SpentTimePerTaskStorage
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.project.Project
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class SpentTimePerTaskStorageTest : IdeaProjectTrait, ComponentAware {
+
+    private lateinit var fixture: IdeaProjectTestFixture
+    override val project: Project by lazy { fixture.project }
+
+    @Before
+    fun setUp() {
+        fixture = getLightCodeInsightFixture()
+        fixture.setUp()
+        spentTimePerTaskStorage.removeAllSavedItems()
+    }
+
+    @Test
+    fun `test legacy store migration`() {
+        val migrated = SpentTimePerTaskStorage.parseLegacyStore("{AT-1=60000, a=b=120000, AT-2=, broken}")
+        assertEquals(mapOf("AT-1" to 60000L, "a=b" to 120000L), migrated)
+    }
+
+    @Test
+    fun `test concurrent set and reset`() {
+        val threads = 8
+        val iterations = 50
+        val minute = 60000L
+        val start = CountDownLatch(1)
+        val reading = AtomicBoolean(true)
+        val lostUpdate = AtomicBoolean(false)
+        val storage = spentTimePerTaskStorage
+
+        val reader = ApplicationManager.getApplication().executeOnPooledThread {
+            var last = 0L
+            while (reading.get()) {
+                // shared total only grows, a smaller value means one writer has overwritten another's update
+                val shared = storage.getSavedTimeForLocalTask("SHARED")
+                if (shared < last) {
+                    lostUpdate.set(true)
+                }
+                last = shared
+            }
+        }
+        val writers = (0 until threads).map { thread ->
+            ApplicationManager.getApplication().executeOnPooledThread {
+                start.await()
+                repeat(iterations) {
+                    storage.setSavedTimeForLocalTask("AT-$thread", minute, notify = false)
+                    storage.setSavedTimeForLocalTask("SHARED", minute, notify = false)
+                    storage.setSavedTimeForLocalTask("RESET-$thread", minute, notify = false)
+                    storage.resetSavedTimeForLocalTask("RESET-$thread")
+                }
+            }
+        }
+        start.countDown()
+        writers.forEach { it.get(30, TimeUnit.SECONDS) }
+        reading.set(false)
+        reader.get(5, TimeUnit.SECONDS)
+
+        (0 until threads).forEach {
+            assertEquals(iterations * minute, storage.getSavedTimeForLocalTask("AT-$it"))
+            assertEquals(0, storage.getSavedTimeForLocalTask("RESET-$it"))
+        }
+        assertEquals(threads * iterations * minute, storage.getSavedTimeForLocalTask("SHARED"))
+        assertEquals(threads + 1, storage.getAllStoredItems().size)
+        assertFalse(lostUpdate.get())
+    }
+
+    @Test
+    fun `test state survives serialization`() {
+        spentTimePerTaskStorage.setSavedTimeForLocalTask("AT-1", 120000, notify = false)
+        val state = spentTimePerTaskStorage.state
+        spentTimePerTaskStorage.removeAllSavedItems()
+        spentTimePerTaskStorage.loadState(state)
+        assertEquals(120000, spentTimePerTaskStorage.getSavedTimeForLocalTask("AT-1"))
+    }
+
+    @After
+    fun tearDown() {
+        spentTimePerTaskStorage.removeAllSavedItems()
+        fixture.tearDown()
+    }
+}